@@ -3,10 +3,12 @@ package io.github.fabiojose.snip;
 import java.io.UncheckedIOException;
 import java.net.URI;
 import java.nio.file.Path;
+import java.time.Duration;
 import java.util.Map;
 import java.util.Optional;
 
 import io.github.fabiojose.snip.context.IllegalPlaceholderException;
+import io.github.fabiojose.snip.context.Options;
 import io.github.fabiojose.snip.context.Placeholders;
 import io.github.fabiojose.snip.context.ReservedPlaceholderException;
 import io.github.fabiojose.snip.templation.TemplationNotFoundException;
@@ -139,22 +141,153 @@ public class CreateCommand implements Runnable {
     )
     Map<String, String> customPlaceholders;
 
+    @Option(
+        names = {
+            "--parallelism"
+        },
+        description = "Number of threads to process file content (default to available processors)",
+        paramLabel = "THREADS",
+        required = false
+    )
+    Integer parallelism;
+
+    @Option(
+        names = {
+            "--max-open-files"
+        },
+        description = "Maximum number of files processed at same time",
+        paramLabel = "FILES",
+        required = false
+    )
+    Integer maxOpenFiles;
+
+    @Option(
+        names = {
+            "--execution"
+        },
+        description = "How file tasks are executed: ${COMPLETION-CANDIDATES} (default to FORK_JOIN)",
+        paramLabel = "MODE",
+        required = false
+    )
+    Options.Execution execution;
+
+    @Option(
+        names = {
+            "--staging-dir"
+        },
+        description = "Where remote templations are downloaded (default to the same file system of app)",
+        paramLabel = "DIR",
+        required = false
+    )
+    Path staging;
+
+    @Option(
+        names = {
+            "--cache-dir"
+        },
+        description = "Where remote templations are kept across runs (default to ~/.snip/cache)",
+        paramLabel = "DIR",
+        required = false
+    )
+    Path cache;
+
+    @Option(
+        names = {
+            "--no-cache"
+        },
+        description = "Download remote templations on every run, without the cache",
+        required = false
+    )
+    boolean noCache;
+
+    @Option(
+        names = {
+            "--stale-while-revalidate"
+        },
+        description = "Seconds after its last check a cached templation is used at once, while revalidated in background (default to 0)",
+        paramLabel = "SECONDS",
+        required = false
+    )
+    Long staleWhileRevalidate;
+
+    @Option(
+        names = {
+            "--link"
+        },
+        description = "Hard link read-only files without placeholders to the templation, instead of copying them",
+        required = false
+    )
+    boolean link;
+
+    @Option(
+        names = {
+            "--offline"
+        },
+        description = "Use remote templations just from the cache, without any network call",
+        required = false
+    )
+    boolean offline;
+
+    @Option(
+        names = {
+            "--dry-run"
+        },
+        description = "Plan the new app without writing it",
+        required = false
+    )
+    boolean dryRun;
+
+    @Option(
+        names = {
+            "--plan-out"
+        },
+        description = "File to write the plan as JSON",
+        paramLabel = "FILE",
+        required = false
+    )
+    Path planOut;
+
     @Override
     public void run() {
 
-        var templation = Templation.newBuilder()
+        var builder = Templation.newBuilder()
             .withLocation(this.templateLocation)
             .withProjectLocation(this.directory)
             .withProjectName(this.name)
             .withProjectVersion(this.projectVersion)
             .withProjectNamespace(this.projectNamespace)
             .withPlaceholders(Optional.ofNullable(this.customPlaceholders).orElseGet(() -> Map.of()))
-            .build();
+            .withDryRun(this.dryRun)
+            .withLink(this.link)
+            .withOffline(this.offline)
+            .withNoCache(this.noCache);
+
+        Optional.ofNullable(this.planOut).ifPresent(builder::withPlanOut);
+        Optional.ofNullable(this.staging).ifPresent(builder::withStaging);
+        Optional.ofNullable(this.cache).ifPresent(builder::withCache);
+
+        try {
+            Optional.ofNullable(this.parallelism).ifPresent(builder::withParallelism);
+            Optional.ofNullable(this.maxOpenFiles).ifPresent(builder::withMaxOpenFiles);
+            Optional.ofNullable(this.execution).ifPresent(builder::withExecution);
+            Optional.ofNullable(this.staleWhileRevalidate)
+                .map(Duration::ofSeconds)
+                .ifPresent(builder::withStaleWhileRevalidate);
+        }catch(IllegalArgumentException e) {
+            throw new CommandLine.ParameterException(spec.commandLine(),
+                e.getMessage(), e);
+        }
+
+        var templation = builder.build();
 
         try {
 
             var newProjectLocation = templation.newProject();
-            reporter.success("New app created at: " + newProjectLocation);
+            if(this.dryRun){
+                reporter.success("New app planned at: " + newProjectLocation);
+            } else {
+                reporter.success("New app created at: " + newProjectLocation);
+            }
 
         }catch(UncheckedIOException | TemplationNotFoundException e) {
             throw new CommandLine.ExecutionException(spec.commandLine(),
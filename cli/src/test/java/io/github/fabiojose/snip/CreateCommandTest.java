@@ -16,7 +16,6 @@ import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.filefilter.TrueFileFilter;
 import org.junit.jupiter.api.Test;
 
-import io.github.fabiojose.snip.templation.TemplationFetcher;
 import picocli.CommandLine;
 
 public class CreateCommandTest {
@@ -174,10 +173,11 @@ public class CreateCommandTest {
     }
 
     @Test
-    public void should_checkout_local_template_to_directory() {
+    public void should_read_local_template_in_place() {
 
         // setup
-        var expected = Path.of(TemplationFetcher.SNIP_TMP_DIR, "example");
+        var template = Path.of("src/test/resources/example");
+        var expected = Path.of(directory, "app-name-0");
 
         String[] args = {
             "create",
@@ -205,6 +205,10 @@ public class CreateCommandTest {
                 TrueFileFilter.INSTANCE).isEmpty()
         );
 
+        // the templation is untouched
+        assertTrue(template.resolve("src/__namespace_/__name_.java").toFile().exists());
+        assertTrue(template.resolve("src/__name_/__c_domain_.txt").toFile().exists());
+
     }
 
     @Test
@@ -793,4 +797,34 @@ public class CreateCommandTest {
         assertEquals(0, exitno);
         assertTrue(Files.exists(expected));
     }
+
+    @Test
+    public void should_write_plan_without_app_dir_when_dry_run() {
+
+        var expected = Path.of(directory, "app-name-26/");
+        var plan = Path.of(directory, "app-name-26-plan.json");
+
+        String[] args = {
+            "create",
+            "-d", directory,
+            "--namespace", "my.namespace",
+            "--project-version", "1.0.0.Beta",
+            "--template", new File(new File(".").getAbsolutePath() + "/src/test/resources/example").toURI().toString(),
+            "-p", "__c_domain_=MyDomain",
+            "-p", "__c_author_=fabiojose",
+            "--dry-run",
+            "--plan-out", plan.toString(),
+            "app-name-26"
+        };
+
+        var command = new CommandLine(entry);
+
+        // act
+        var exitno = command.execute(args);
+
+        // assert
+        assertEquals(0, exitno);
+        assertFalse(Files.exists(expected));
+        assertTrue(Files.exists(plan));
+    }
 }
@@ -1,15 +1,20 @@
 package io.github.fabiojose.snip;
 
+import io.github.fabiojose.snip.context.Binary;
 import io.github.fabiojose.snip.context.Context;
+import io.github.fabiojose.snip.context.Options;
 import io.github.fabiojose.snip.context.Placeholders;
 import io.github.fabiojose.snip.model.ProjectName;
 import io.github.fabiojose.snip.model.ProjectNamespace;
 import io.github.fabiojose.snip.model.ProjectVersion;
+import io.github.fabiojose.snip.processor.Plan;
 import io.github.fabiojose.snip.processor.Processor;
 import io.github.fabiojose.snip.templation.ConfigurationLoader;
 import io.github.fabiojose.snip.templation.ScriptExecutor;
+import io.github.fabiojose.snip.templation.TemplationCache;
 import io.github.fabiojose.snip.templation.TemplationFetcher;
 import io.github.fabiojose.snip.templation.TemplationNotFoundException;
+import io.github.fabiojose.snip.util.FileUtil;
 import io.github.fabiojose.snip.util.JSONUtil;
 
 import java.io.IOException;
@@ -17,12 +22,13 @@ import java.io.UncheckedIOException;
 import java.net.URI;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Duration;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
 import java.util.stream.Collectors;
 
-import org.apache.commons.io.FileUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -36,6 +42,11 @@ public class Templation {
 
     private static final Logger log = LoggerFactory.getLogger(Templation.class);
 
+    /**
+     * Within the staging, where failed projects go to be deleted
+     */
+    static final String TRASH_DIR = "trash";
+
     private URI location;
     private Map<String, String> customPlaceholders;
 
@@ -45,6 +56,11 @@ public class Templation {
     private ProjectVersion projectVersion;
     private ProjectNamespace projectNamespace;
 
+    private Options options;
+
+    private boolean dryRun;
+    private Path planOut;
+
     /**
      * @return Location with brand new generated project
      * @throws UncheckedIOException When there errors related to i/o (e.g. errors to download remote template or errors during the project write to local storage)
@@ -68,39 +84,74 @@ public class Templation {
         final var projectDir = this.projectLocation.resolve(this.projectName.getName());
         log.debug("Project will generated in {}", projectDir);
 
+        // downloads and extractions in the same file system of new project
+        final var staging = Optional.ofNullable(options.getStaging())
+            .orElseGet(() -> TemplationFetcher.staging(projectLocation));
+
+        // written hidden, then published with a rename
+        final var stagedDir = FileUtil.sibling(projectDir);
+        final var trash = staging.resolve(TRASH_DIR);
+        FileUtil.sweep(trash);
+
         boolean success = false;
-        try {
-            final var fetcher = TemplationFetcher.create(this.location);
+        boolean published = false;
+
+        // fetched templations reused across runs
+        final var cache = options.isNoCache() ? null
+            : TemplationCache.create(
+                Optional.ofNullable(options.getCache())
+                    .orElseGet(TemplationCache::home),
+                options.getStaleWhileRevalidate());
+
+        try(final var fetcher = TemplationFetcher.create(this.location, staging, cache,
+                options.isOffline())) {
             log.debug("Templation located at {}", this.location);
 
             // download or copy
             final var template = fetcher.fetch();
 
-            FileUtils.copyDirectory(template.toFile(), projectDir.toFile());
-            log.debug("template copied to project directory at {}", projectDir);
-
             // load .snip.yml, if any
-            var config = ConfigurationLoader.load(projectDir);
+            var config = ConfigurationLoader.load(template);
 
             // custom placeholder rules, if any
             config.
                 flatMap(c -> JSONUtil.pointer(c).asObject("#/placeholders"))
                 .ifPresent(placeholders::rules);
 
-            // remove .git folder (if exists)
-            var gitdir = projectDir.resolve(".git");
-            FileUtils.deleteQuietly(gitdir.toFile());
+            // files declared as binary, if any
+            var binary = config
+                .flatMap(c -> JSONUtil.pointer(c).asArray("#/binary"))
+                .map(a -> a.toList().stream()
+                    .map(Object::toString)
+                    .collect(Collectors.toList()))
+                .map(Binary::create)
+                .orElseGet(Binary::none);
+
+            // cached trees are shared by the later runs, never linked
+            var tuning = options;
+            if(options.isLink() && null!= cache && cache.contains(template)){
+                log.info("Templation read from the cache, files will be copied instead of linked");
+                tuning = options.toBuilder().link(false).build();
+            }
+
+            var context = Context.create(placeholders.build(), template, projectDir,
+                binary, tuning);
 
-            var context = Context.create(placeholders.build(), template, projectDir);
+            // final path and action of each entry, .git folder skipped
+            var plan = Plan.create(context);
+            Optional.ofNullable(planOut).ifPresent(plan::write);
 
-            // process folders parameters
-            Processor.forDirectories().process(context);;
+            if(dryRun){
+                log.info("Dry run, nothing written: {} {} bytes, {} bytes saved by duplicates",
+                    plan.count(), plan.bytes(), plan.saved());
+                success = true;
 
-            // process file name parameters
-            Processor.forFiles().process(context);
+                return projectDir;
+            }
 
-            // process file content parameters
-            Processor.forContent().process(context);
+            // write folders, files and file content with parameters processed
+            Processor.forCommit(plan).process(context.withTarget(stagedDir));
+            published = FileUtil.publish(stagedDir, projectDir);
 
             // run post script, if any
             config
@@ -116,10 +167,12 @@ public class Templation {
             throw new UncheckedIOException(e);
         }finally {
             if(!success) {
-                try{
-                    FileUtils.forceDelete(projectDir.toFile());
-                }catch(IOException e) {
-                    log.error("can not delete " + projectDir, e);
+                // out of sight now, deleted in background
+                if(Files.exists(stagedDir)){
+                    FileUtil.discard(stagedDir, trash);
+                }
+                if(published){
+                    FileUtil.discard(projectDir, trash);
                 }
             }
         }
@@ -143,6 +196,11 @@ public class Templation {
         private ProjectVersion projectVersion;
         private ProjectNamespace projectNamespace;
 
+        private Options.OptionsBuilder options = Options.builder();
+
+        private boolean dryRun;
+        private Path planOut;
+
         /**
          * The location of template
          */
@@ -190,6 +248,115 @@ public class Templation {
             return this;
         }
 
+        /**
+         * Number of threads to process file content, default to the number
+         * of available processors
+         */
+        public TemplationBuilder withParallelism(int parallelism) {
+            if(parallelism < 1){
+                throw new IllegalArgumentException(
+                    "Parallelism must be greater than zero: " + parallelism);
+            }
+            this.options.parallelism(parallelism);
+            return this;
+        }
+
+        /**
+         * Maximum number of files processed at same time
+         */
+        public TemplationBuilder withMaxOpenFiles(int maxOpenFiles) {
+            if(maxOpenFiles < 1){
+                throw new IllegalArgumentException(
+                    "Max open files must be greater than zero: " + maxOpenFiles);
+            }
+            this.options.maxOpenFiles(maxOpenFiles);
+            return this;
+        }
+
+        /**
+         * How file tasks are executed. Virtual threads fall back to
+         * fork-join when the JVM does not support them.
+         */
+        public TemplationBuilder withExecution(Options.Execution execution) {
+            this.options.execution(Objects.requireNonNull(execution));
+            return this;
+        }
+
+        /**
+         * Where remote templations are downloaded and extracted, default to
+         * a location in the same file system of project location
+         */
+        public TemplationBuilder withStaging(Path staging) {
+            this.options.staging(Objects.requireNonNull(staging));
+            return this;
+        }
+
+        /**
+         * Where remote templations are kept across runs, default to
+         * {@code .snip/cache} within the user home
+         */
+        public TemplationBuilder withCache(Path cache) {
+            this.options.cache(Objects.requireNonNull(cache));
+            return this;
+        }
+
+        /**
+         * Downloads remote templations on every run, without the cache
+         */
+        public TemplationBuilder withNoCache(boolean noCache) {
+            this.options.noCache(noCache);
+            return this;
+        }
+
+        /**
+         * How long after its last check a cached templation is used at once,
+         * while revalidated in background, default to zero: always
+         * revalidated before use
+         */
+        public TemplationBuilder withStaleWhileRevalidate(Duration window) {
+            if(window.isNegative()){
+                throw new IllegalArgumentException(
+                    "Stale-while-revalidate must not be negative: " + window);
+            }
+            this.options.staleWhileRevalidate(window);
+            return this;
+        }
+
+        /**
+         * Resolves remote templations just from the cache, failing when not
+         * cached, without any network call
+         */
+        public TemplationBuilder withOffline(boolean offline) {
+            this.options.offline(offline);
+            return this;
+        }
+
+        /**
+         * Hard links, instead of copies, for files without placeholders,
+         * when the templation is in the same file store and they are
+         * read-only there
+         */
+        public TemplationBuilder withLink(boolean link) {
+            this.options.link(link);
+            return this;
+        }
+
+        /**
+         * Plans without writing the new project
+         */
+        public TemplationBuilder withDryRun(boolean dryRun) {
+            this.dryRun = dryRun;
+            return this;
+        }
+
+        /**
+         * File to write the plan as JSON
+         */
+        public TemplationBuilder withPlanOut(Path planOut) {
+            this.planOut = Objects.requireNonNull(planOut);
+            return this;
+        }
+
         public Templation build() {
             return new Templation(
                 location,
@@ -197,7 +364,10 @@ public class Templation {
                 projectLocation,
                 projectName,
                 projectVersion,
-                projectNamespace
+                projectNamespace,
+                options.build(),
+                dryRun,
+                planOut
             );
         }
     }
@@ -0,0 +1,76 @@
+package io.github.fabiojose.snip.context;
+
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Files declared as binary within {@code .snip.yml}, like the
+ * {@code binary} attribute of {@code .gitattributes}. Their content is
+ * never processed.
+ * <p>
+ * Patterns are globs. Those without {@code /} match the file name at any
+ * level, the others match the path relative to the templation root.
+ *
+ * @author fabiojose
+ */
+@Slf4j
+public class Binary {
+
+    private static final String UNIX_FILE_SEPARATOR = "/";
+
+    @Getter
+    private List<String> patterns;
+
+    private List<PathMatcher> names;
+    private List<PathMatcher> paths;
+
+    private Binary() {}
+
+    /**
+     * @param relative Path relative to the templation root
+     */
+    public boolean declared(Path relative) {
+        Objects.requireNonNull(relative);
+
+        var name = relative.getFileName();
+        if(null!= name && names.stream().anyMatch(m -> m.matches(name))){
+            return true;
+        }
+
+        return paths.stream().anyMatch(m -> m.matches(relative));
+    }
+
+    public static Binary none() {
+        return create(List.of());
+    }
+
+    public static Binary create(List<String> patterns) {
+
+        var result = new Binary();
+        result.patterns = Collections.unmodifiableList(patterns);
+        log.debug("Declared binary files {}", patterns);
+
+        var fs = FileSystems.getDefault();
+
+        result.names = patterns.stream()
+            .filter(p -> !p.contains(UNIX_FILE_SEPARATOR))
+            .map(p -> fs.getPathMatcher("glob:" + p))
+            .collect(Collectors.toList());
+
+        result.paths = patterns.stream()
+            .filter(p -> p.contains(UNIX_FILE_SEPARATOR))
+            .map(p -> p.startsWith(UNIX_FILE_SEPARATOR) ? p.substring(1) : p)
+            .map(p -> fs.getPathMatcher("glob:" + p))
+            .collect(Collectors.toList());
+
+        return result;
+    }
+}
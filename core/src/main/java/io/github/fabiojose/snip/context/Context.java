@@ -18,6 +18,8 @@ public class Context {
     public static final String SNIP_IGNORE =  ".snipignore";
 
     private Include include;
+    private Binary binary;
+    private Options options;
     private Placeholders placeholders;
     private Path template;
     private Path target;
@@ -25,14 +27,37 @@ public class Context {
     private Context() {}
 
     public static Context create(Placeholders placeholders, Path template, Path target) {
+        return create(placeholders, template, target, Binary.none(), Options.defaults());
+    }
+
+    public static Context create(Placeholders placeholders, Path template, Path target,
+        Binary binary, Options options) {
 
         var result = new Context();
-        result.include = Include.create(Path.of(template.toString(), SNIP_IGNORE));
+        result.include = Include.create(template.resolve(SNIP_IGNORE));
 
+        result.binary = Objects.requireNonNull(binary);
+        result.options = Objects.requireNonNull(options);
         result.placeholders = Objects.requireNonNull(placeholders);
         result.template = Objects.requireNonNull(template);
         result.target = Objects.requireNonNull(target);
 
         return result;
     }
+
+    /**
+     * @return The same context, writing to another target
+     */
+    public Context withTarget(Path target) {
+
+        var result = new Context();
+        result.include = include;
+        result.binary = binary;
+        result.options = options;
+        result.placeholders = placeholders;
+        result.template = template;
+        result.target = Objects.requireNonNull(target);
+
+        return result;
+    }
 }
@@ -0,0 +1,523 @@
+package io.github.fabiojose.snip.context;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The lines of an ignore file compiled once, with the semantics of
+ * {@code .gitignore}: negation with {@code !}, anchoring with {@code /},
+ * directory-only rules ending with {@code /}, {@code *}, {@code ?},
+ * {@code [...]} and {@code **}. The last matching rule wins and nothing
+ * within an ignored directory can be included again.
+ * <p>
+ * Rules for a plain name are kept in a trie of characters, those like
+ * {@code *.class} in a trie of reversed suffixes and those like
+ * {@code build*} in a trie of prefixes. So most of the rules are evaluated
+ * in time proportional to the length of the segment, not to the number of
+ * rules. Just the other globs and the anchored rules are tried one by one.
+ * A path is evaluated segment by segment, over its string, without
+ * allocation.
+ *
+ * @author fabiojose
+ */
+class IgnoreRules {
+
+    /**
+     * To evaluate the parents of the last segment
+     */
+    static final int PARENTS = 1;
+
+    /**
+     * To evaluate the last segment
+     */
+    static final int SELF = 2;
+
+    private static final int NONE = -1;
+
+    private static final char ESCAPE = '\\';
+    private static final String ANY_DEPTH = "**";
+
+    private static class Rule {
+        final int index;
+        final boolean negated;
+        final boolean directory;
+        final boolean anchored;
+        final Segment[] segments;
+
+        Rule(int index, boolean negated, boolean directory, boolean anchored,
+            Segment[] segments) {
+            this.index = index;
+            this.negated = negated;
+            this.directory = directory;
+            this.anchored = anchored;
+            this.segments = segments;
+        }
+    }
+
+    /**
+     * One segment of a rule: a literal name, a glob or any depth
+     */
+    private static class Segment {
+        final char[] pattern;
+        final boolean literal;
+        final boolean anyDepth;
+
+        Segment(char[] pattern, boolean literal, boolean anyDepth) {
+            this.pattern = pattern;
+            this.literal = literal;
+            this.anyDepth = anyDepth;
+        }
+
+        boolean matches(CharSequence s, int from, int to) {
+            if(literal){
+                if(to - from != pattern.length){
+                    return false;
+                }
+                for(int i = 0; i < pattern.length; i++){
+                    if(pattern[i] != s.charAt(from + i)){
+                        return false;
+                    }
+                }
+                return true;
+            }
+            return glob(pattern, s, from, to);
+        }
+    }
+
+    /**
+     * Names, prefixes or reversed suffixes of unanchored rules
+     */
+    private static class Node {
+        char[] keys = new char[0];
+        Node[] next = new Node[0];
+
+        // the last rule ending here, for any entry and for directories only
+        int any = NONE;
+        int directories = NONE;
+
+        Node child(char c) {
+            for(int i = 0; i < keys.length; i++){
+                if(keys[i] == c){
+                    return next[i];
+                }
+            }
+            return null;
+        }
+
+        Node add(char c) {
+            var result = child(c);
+            if(null== result){
+                result = new Node();
+                keys = Arrays.copyOf(keys, keys.length + 1);
+                next = Arrays.copyOf(next, next.length + 1);
+                keys[keys.length - 1] = c;
+                next[next.length - 1] = result;
+            }
+            return result;
+        }
+    }
+
+    private final Rule[] rules;
+    private final Node names = new Node();
+    private final Node suffixes = new Node();
+    private final Node prefixes = new Node();
+
+    // rules not in the trie, last first
+    private final Rule[] basenames;
+    private final Rule[] anchored;
+
+    private IgnoreRules(List<Rule> rules) {
+
+        this.rules = rules.toArray(new Rule[0]);
+
+        var basenames = new ArrayList<Rule>();
+        var anchored = new ArrayList<Rule>();
+
+        for(int i = rules.size() - 1; i >= 0; i--){
+            var rule = rules.get(i);
+
+            if(rule.anchored){
+                anchored.add(rule);
+
+            } else if(rule.segments[0].literal){
+                index(names, rule.segments[0].pattern, false, rule);
+
+            } else if(null!= suffix(rule.segments[0].pattern)){
+                index(suffixes, suffix(rule.segments[0].pattern), true, rule);
+
+            } else if(null!= prefix(rule.segments[0].pattern)){
+                index(prefixes, prefix(rule.segments[0].pattern), false, rule);
+
+            } else {
+                basenames.add(rule);
+            }
+        }
+
+        this.basenames = basenames.toArray(new Rule[0]);
+        this.anchored = anchored.toArray(new Rule[0]);
+    }
+
+    private static void index(Node root, char[] chars, boolean reversed, Rule rule) {
+
+        var node = root;
+        for(int i = 0; i < chars.length; i++){
+            node = node.add(chars[reversed ? chars.length - 1 - i : i]);
+        }
+        if(rule.directory){
+            node.directories = Math.max(node.directories, rule.index);
+        } else {
+            node.any = Math.max(node.any, rule.index);
+        }
+    }
+
+    /**
+     * @return The chars after the star, when the glob is a star followed by
+     * plain chars, or {@code null} otherwise
+     */
+    private static char[] suffix(char[] glob) {
+        if(glob.length > 0 && '*' == glob[0] && plain(glob, 1, glob.length)){
+            return Arrays.copyOfRange(glob, 1, glob.length);
+        }
+        return null;
+    }
+
+    /**
+     * @return The chars before the star, when the glob is plain chars
+     * followed by a star, or {@code null} otherwise
+     */
+    private static char[] prefix(char[] glob) {
+        if(glob.length > 0 && '*' == glob[glob.length - 1] && plain(glob, 0, glob.length - 1)){
+            return Arrays.copyOfRange(glob, 0, glob.length - 1);
+        }
+        return null;
+    }
+
+    private static boolean plain(char[] glob, int from, int to) {
+        for(int i = from; i < to; i++){
+            if(special(glob[i]) || ESCAPE == glob[i]){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int best(Node node, boolean directory) {
+        return directory ? Math.max(node.any, node.directories) : node.any;
+    }
+
+    private static boolean separator(char c) {
+        return '/' == c || File.separatorChar == c;
+    }
+
+    private static boolean special(char c) {
+        return '*' == c || '?' == c || '[' == c;
+    }
+
+    private static Segment segment(String pattern) {
+
+        if(ANY_DEPTH.equals(pattern)){
+            return new Segment(new char[0], false, true);
+        }
+
+        var literal = new StringBuilder();
+        for(int i = 0; i < pattern.length(); i++){
+            var c = pattern.charAt(i);
+            if(ESCAPE == c && i + 1 < pattern.length()){
+                literal.append(pattern.charAt(++i));
+            } else if(special(c)){
+                return new Segment(pattern.toCharArray(), false, false);
+            } else {
+                literal.append(c);
+            }
+        }
+        return new Segment(literal.toString().toCharArray(), true, false);
+    }
+
+    /**
+     * @return The rule of a line, or {@code null} when there is none
+     */
+    private static Rule rule(int index, String line) {
+
+        var negated = line.startsWith("!");
+        if(negated || line.startsWith("\\!") || line.startsWith("\\#")){
+            line = line.substring(1);
+        }
+
+        var directory = line.endsWith("/");
+        line = line.replaceAll("/+$", "");
+
+        // a separator at the beginning or middle anchors the rule
+        var anchor = line.indexOf('/') >= 0;
+        line = line.replaceAll("^/+", "");
+
+        if(line.isEmpty()){
+            return null;
+        }
+
+        var parts = line.split("/+");
+        var segments = new ArrayList<Segment>();
+
+        for(int i = 0; i < parts.length; i++){
+            if(ANY_DEPTH.equals(parts[i]) && i == parts.length - 1 && i > 0){
+                // everything inside, the parents are evaluated before
+                segments.add(segment("*"));
+            } else if(!ANY_DEPTH.equals(parts[i])
+                || segments.isEmpty() || !segments.get(segments.size() - 1).anyDepth){
+                segments.add(segment(parts[i]));
+            }
+        }
+
+        if(!anchor && !segments.get(0).anyDepth){
+            return new Rule(index, negated, directory, false,
+                new Segment[]{ segments.get(0) });
+        }
+
+        if(1 == segments.size() && segments.get(0).anyDepth){
+            // just **, any path
+            segments.add(segment("*"));
+        }
+
+        return new Rule(index, negated, directory, true,
+            segments.toArray(new Segment[0]));
+    }
+
+    static IgnoreRules compile(List<String> lines) {
+
+        var rules = new ArrayList<Rule>();
+        for(var line : lines){
+            var rule = rule(rules.size(), line);
+            if(null!= rule){
+                rules.add(rule);
+            }
+        }
+
+        return new IgnoreRules(rules);
+    }
+
+    /**
+     * Wildcard matching of one segment, with backtracking just to the last
+     * star
+     */
+    static boolean glob(char[] p, CharSequence s, int from, int to) {
+
+        int pi = 0;
+        int si = from;
+        int star = NONE;
+        int mark = 0;
+
+        while(si < to){
+            if(pi < p.length && '*' == p[pi]){
+                star = ++pi;
+                mark = si;
+
+            } else if(pi < p.length && '?' == p[pi]){
+                pi++;
+                si++;
+
+            } else if(pi < p.length && '[' == p[pi] && klass(p, pi, s.charAt(si)) > 0){
+                pi = klass(p, pi, s.charAt(si));
+                si++;
+
+            } else if(pi < p.length && literal(p, pi, s.charAt(si))){
+                pi += ESCAPE == p[pi] && pi + 1 < p.length ? 2 : 1;
+                si++;
+
+            } else if(NONE != star){
+                pi = star;
+                si = ++mark;
+
+            } else {
+                return false;
+            }
+        }
+
+        while(pi < p.length && '*' == p[pi]){
+            pi++;
+        }
+        return pi == p.length;
+    }
+
+    private static boolean literal(char[] p, int pi, char c) {
+        if(ESCAPE == p[pi] && pi + 1 < p.length){
+            return p[pi + 1] == c;
+        }
+        if('[' == p[pi]){
+            // just when not closed
+            return '[' == c && !closed(p, pi);
+        }
+        return p[pi] == c;
+    }
+
+    private static boolean closed(char[] p, int pi) {
+        for(int i = pi + 2; i < p.length; i++){
+            if(']' == p[i]){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return The position after the class, when it has the char, or
+     * {@code 0} otherwise
+     */
+    private static int klass(char[] p, int pi, char c) {
+
+        int i = pi + 1;
+        var negated = i < p.length && ('!' == p[i] || '^' == p[i]);
+        if(negated){
+            i++;
+        }
+
+        var found = false;
+        var first = true;
+        while(i < p.length && (first || ']' != p[i])){
+            first = false;
+
+            var low = p[i];
+            if(ESCAPE == low && i + 1 < p.length){
+                low = p[++i];
+            }
+
+            var high = low;
+            if(i + 2 < p.length && '-' == p[i + 1] && ']' != p[i + 2]){
+                high = p[i + 2];
+                i += 2;
+            }
+
+            if(c >= low && c <= high){
+                found = true;
+            }
+            i++;
+        }
+
+        if(i >= p.length){
+            // not closed, it is not a class
+            return 0;
+        }
+        return found != negated ? i + 1 : 0;
+    }
+
+    private static int next(CharSequence s, int from, int to) {
+        int i = from;
+        while(i < to && !separator(s.charAt(i))){
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Whether the segments from pi match the path from position to end
+     */
+    private static boolean anchored(Segment[] p, int pi, CharSequence s, int position, int end) {
+
+        if(pi == p.length){
+            return position > end;
+        }
+
+        if(p[pi].anyDepth){
+            if(anchored(p, pi + 1, s, position, end)){
+                return true;
+            }
+            if(position > end){
+                return false;
+            }
+            return anchored(p, pi, s, next(s, position, end) + 1, end);
+        }
+
+        if(position > end){
+            return false;
+        }
+
+        var to = next(s, position, end);
+        return p[pi].matches(s, position, to)
+            && anchored(p, pi + 1, s, to + 1, end);
+    }
+
+    /**
+     * @return Index of the last rule matching the path from root to end,
+     * whose last segment starts at start
+     */
+    private int last(CharSequence s, int root, int start, int end, boolean directory) {
+
+        var best = NONE;
+
+        var node = names;
+        for(int i = start; i < end && null!= node; i++){
+            node = node.child(s.charAt(i));
+        }
+        if(null!= node){
+            best = best(node, directory);
+        }
+
+        // every node on the way is a suffix, or a prefix, of the segment
+        node = suffixes;
+        for(int i = end - 1; null!= node; i--){
+            best = Math.max(best, best(node, directory));
+            node = i >= start ? node.child(s.charAt(i)) : null;
+        }
+
+        node = prefixes;
+        for(int i = start; null!= node; i++){
+            best = Math.max(best, best(node, directory));
+            node = i < end ? node.child(s.charAt(i)) : null;
+        }
+
+        for(var rule : basenames){
+            if(rule.index <= best){
+                break;
+            }
+            if((directory || !rule.directory)
+                && rule.segments[0].matches(s, start, end)){
+                best = rule.index;
+                break;
+            }
+        }
+
+        for(var rule : anchored){
+            if(rule.index <= best){
+                break;
+            }
+            if((directory || !rule.directory)
+                && anchored(rule.segments, 0, s, root, end)){
+                best = rule.index;
+                break;
+            }
+        }
+
+        return best;
+    }
+
+    /**
+     * @param s The path, relative to where the ignore file is, from position
+     * root
+     * @param directory Whether the last segment is a directory
+     * @param scope {@link #PARENTS}, {@link #SELF} or both
+     * @return {@code true} when ignored
+     */
+    boolean ignored(CharSequence s, int root, boolean directory, int scope) {
+
+        var length = s.length();
+        while(root < length && separator(s.charAt(root))){
+            root++;
+        }
+
+        int start = root;
+        while(start < length){
+            var end = next(s, start, length);
+            var self = end >= length;
+
+            if(0 != (scope & (self ? SELF : PARENTS))){
+                var index = last(s, root, start, end, !self || directory);
+                if(NONE != index && !rules[index].negated){
+                    return true;
+                }
+            }
+            start = end + 1;
+        }
+
+        return false;
+    }
+}
@@ -1,16 +1,16 @@
 package io.github.fabiojose.snip.context;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
 import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.stream.Collectors;
 
 import io.github.fabiojose.snip.templation.ConfigurationLoader;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 
@@ -35,56 +35,94 @@ public class Include {
     private List<String> wildcards;
     private List<String> files;
 
+    @Getter(AccessLevel.NONE)
+    private IgnoreRules rules;
+
+    /**
+     * Where the ignore file is, the rules are relative to it
+     */
+    @Getter(AccessLevel.NONE)
+    private Path root;
+
+    @Getter(AccessLevel.NONE)
+    private int rootLength;
+
     private Include(){
     }
 
-    public boolean it(Path resource) {
-        var included = folder(resource);
+    /**
+     * @return Position where the path relative to root starts
+     */
+    private int relative(Path path, String s) {
 
-        if(included){
-            included = wildcard(resource);
+        if(null!= root
+            && root.getFileSystem().equals(path.getFileSystem())
+            && path.startsWith(root)){
+            return Math.min(rootLength, s.length());
         }
+        return 0;
+    }
 
-        if(included){
-            included = file(resource);
-        }
+    private boolean ignored(Path path, boolean directory, int scope) {
+        var s = path.toString();
+        return rules.ignored(s, relative(path, s), directory, scope);
+    }
+
+    public boolean it(Path resource) {
+        return it(resource, Files.isDirectory(resource));
+    }
 
-        return included;
+    /**
+     * Like {@link #it(Path)}, when the caller already knows whether the
+     * resource is a directory, saving one file system access
+     */
+    public boolean it(Path resource, boolean directory) {
+        return !ignored(resource, directory, IgnoreRules.PARENTS | IgnoreRules.SELF);
     }
 
     public boolean folder(Path folder) {
+        return folder(folder, Files.isDirectory(folder));
+    }
 
-        var stream = folders.stream();
+    /**
+     * @return {@code false} when within an ignored directory, or when it is
+     * an ignored directory
+     */
+    public boolean folder(Path folder, boolean directory) {
+        return !ignored(folder, directory,
+            directory ? IgnoreRules.PARENTS | IgnoreRules.SELF : IgnoreRules.PARENTS);
+    }
 
-        if(Files.isDirectory(folder)){
-            stream = folders.stream()
-                .map(f -> f.substring(0, f.length() -1))
-                .peek(f -> log.debug("Directory to ignore {}", f));
-        }
+    /**
+     * @return {@code true} when every path below the directory is ignored,
+     * so there is no need to walk it to find includes
+     */
+    public boolean subtree(Path directory) {
+        return ignored(directory, true, IgnoreRules.PARENTS | IgnoreRules.SELF);
+    }
 
-        return !stream.filter(f -> folder.toString()
-                    .replaceAll("\\\\", "/").contains(f))
-                .findFirst()
-                .isPresent();
+    /**
+     * Like {@link #subtree(Path)}, but evaluating just the directory itself,
+     * for walks from the root that already know its parents are included
+     *
+     * @return {@code false} when the directory itself is ignored
+     */
+    public boolean directory(Path directory) {
+        return !ignored(directory, true, IgnoreRules.SELF);
     }
 
+    /**
+     * @return {@code false} when the resource itself, as a file, is ignored
+     */
     public boolean wildcard(Path resource) {
-
-        return !wildcards.stream()
-            .map(w -> w.substring(1))
-            .filter(w -> resource.toString().endsWith(w))
-            .peek(w -> log.debug("Wildcard to ignore {}", w))
-            .findAny()
-            .isPresent();
+        return !ignored(resource, false, IgnoreRules.SELF);
     }
 
+    /**
+     * @return {@code false} when the file itself is ignored
+     */
     public boolean file(Path file) {
-
-        return !files.stream()
-            .filter(f -> file.toString().contains(f))
-            .peek(f -> log.debug("File to ignore {}", f))
-            .findFirst()
-            .isPresent();
+        return !ignored(file, false, IgnoreRules.SELF);
     }
 
     public static Include empty() {
@@ -94,6 +132,7 @@ public class Include {
         result.folders = List.of();
         result.wildcards = List.of();
         result.files = List.of();
+        result.rules = IgnoreRules.compile(List.of());
 
         return result;
     }
@@ -101,7 +140,7 @@ public class Include {
     public static Include create(Path ignore) {
 
         if(Files.exists(ignore)){
-            try(var in = new BufferedReader(new FileReader(ignore.toFile()))){
+            try(var in = Files.newBufferedReader(ignore)){
 
                 var result = new Include();
 
@@ -133,6 +172,15 @@ public class Include {
                 result.files.addAll(ALWAYS_IGNORE_FILE);
                 result.files = Collections.unmodifiableList(result.files);
 
+                // the always ignored come last, so they are never negated
+                var lines = new ArrayList<>(result.all);
+                lines.addAll(ALWAYS_IGNORE_FOLDER);
+                lines.addAll(ALWAYS_IGNORE_FILE);
+                result.rules = IgnoreRules.compile(lines);
+
+                result.root = ignore.getParent();
+                result.rootLength = null!= result.root ? result.root.toString().length() : 0;
+
                 return result;
 
             } catch (IOException e){
@@ -0,0 +1,131 @@
+package io.github.fabiojose.snip.context;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Optional;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Tuning of the scaffolding execution. They never change the content of the
+ * generated project, just how it is generated. With {@link #isLink() link},
+ * some of its files are hard links to the templation.
+ *
+ * @author fabiojose
+ */
+@Getter
+@ToString
+@Builder(toBuilder = true)
+public class Options {
+
+    public enum Execution {
+        /**
+         * Work-stealing pool of platform threads, limited by parallelism
+         */
+        FORK_JOIN,
+
+        /**
+         * One virtual thread per file, limited just by max open files.
+         * Requires Java 21 or newer, otherwise fork-join is used.
+         */
+        VIRTUAL_THREADS,
+
+        /**
+         * File content flows through reader, transformer and writer stages,
+         * so the i/o of some files overlaps the scanning of others. Other
+         * file tasks use fork-join.
+         */
+        PIPELINE
+    }
+
+    public static final String PARALLELISM_PROPERTY = "snip.parallelism";
+    public static final String MAX_OPEN_FILES_PROPERTY = "snip.max.open.files";
+    public static final String EXECUTION_PROPERTY = "snip.execution";
+    public static final String STAGING_PROPERTY = "snip.staging.dir";
+    public static final String LINK_PROPERTY = "snip.link";
+    public static final String CACHE_PROPERTY = "snip.cache.dir";
+    public static final String STALE_PROPERTY = "snip.cache.stale.seconds";
+    public static final String OFFLINE_PROPERTY = "snip.offline";
+    public static final String NO_CACHE_PROPERTY = "snip.no.cache";
+
+    private static final int DEFAULT_MAX_OPEN_FILES = 64;
+
+    /**
+     * Number of threads to process file content. Use {@code 1} to process
+     * file by file, in the caller thread.
+     */
+    @Builder.Default
+    private int parallelism = Integer.getInteger(PARALLELISM_PROPERTY,
+        Runtime.getRuntime().availableProcessors());
+
+    /**
+     * Maximum number of files processed at same time, each one holding
+     * its input and its rewritten sibling open.
+     */
+    @Builder.Default
+    private int maxOpenFiles = Integer.getInteger(MAX_OPEN_FILES_PROPERTY,
+        DEFAULT_MAX_OPEN_FILES);
+
+    /**
+     * How file tasks are executed
+     */
+    @Builder.Default
+    private Execution execution = Execution.valueOf(
+        System.getProperty(EXECUTION_PROPERTY, Execution.FORK_JOIN.name()));
+
+    /**
+     * Where remote templations are downloaded and extracted. When absent,
+     * a location in the same file system of new project is used.
+     */
+    @Builder.Default
+    private Path staging = Optional.ofNullable(System.getProperty(STAGING_PROPERTY))
+        .map(Path::of)
+        .orElse(null);
+
+    /**
+     * Files written byte-for-byte become hard links to the templation, when
+     * both are in the same file store and nobody may write to the templation
+     * file. Otherwise they are copied, so a change made to a new project
+     * never reaches the templation, nor the projects created after it.
+     */
+    @Builder.Default
+    private boolean link = Boolean.getBoolean(LINK_PROPERTY);
+
+    /**
+     * Where remote templations are kept, extracted, across runs and
+     * processes. When absent, a location within the user home is used.
+     */
+    @Builder.Default
+    private Path cache = Optional.ofNullable(System.getProperty(CACHE_PROPERTY))
+        .map(Path::of)
+        .orElse(null);
+
+    /**
+     * Remote templations are downloaded on every run and read within the
+     * archive, without the cache.
+     */
+    @Builder.Default
+    private boolean noCache = Boolean.getBoolean(NO_CACHE_PROPERTY);
+
+    /**
+     * How long after its last check a cached templation is used at once,
+     * while it is revalidated in background, overlapping the scaffolding.
+     * Zero revalidates before every use.
+     */
+    @Builder.Default
+    private Duration staleWhileRevalidate = Duration.ofSeconds(
+        Long.getLong(STALE_PROPERTY, 0));
+
+    /**
+     * Remote templations are resolved just from the cache, without any
+     * network call. Those not cached are not found.
+     */
+    @Builder.Default
+    private boolean offline = Boolean.getBoolean(OFFLINE_PROPERTY);
+
+    public static Options defaults() {
+        return builder().build();
+    }
+}
@@ -0,0 +1,239 @@
+package io.github.fabiojose.snip.processor;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
+
+import io.github.fabiojose.snip.context.Context;
+import io.github.fabiojose.snip.context.Options.Execution;
+import io.github.fabiojose.snip.processor.Plan.Action;
+import io.github.fabiojose.snip.processor.Plan.Entry;
+import io.github.fabiojose.snip.util.FileUtil;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Executes a {@link Plan}, writing each entry of the templation to its
+ * final path within the new project, exactly once.
+ *
+ * @author fabiojose
+ */
+@Slf4j
+public class CommitProcessor implements Processor {
+
+    private final Plan plan;
+    private final FileContentProcessor content = new FileContentProcessor();
+
+    private final AtomicLong rewritten = new AtomicLong();
+    private final AtomicLong copied = new AtomicLong();
+    private final AtomicLong linked = new AtomicLong();
+    private final AtomicLong hardLinked = new AtomicLong();
+    private final AtomicLong duplicated = new AtomicLong();
+    private final AtomicLong saved = new AtomicLong();
+
+    private boolean hardLinks;
+
+    CommitProcessor(Plan plan) {
+        this.plan = Objects.requireNonNull(plan);
+    }
+
+    /**
+     * @return Number of files written with the placeholders replaced
+     */
+    public long getRewritten() {
+        return rewritten.get();
+    }
+
+    /**
+     * @return Number of files copied byte-for-byte
+     */
+    public long getCopied() {
+        return copied.get();
+    }
+
+    /**
+     * @return Number of symbolic links created
+     */
+    public long getLinked() {
+        return linked.get();
+    }
+
+    /**
+     * @return Number of files created as hard links to the templation
+     */
+    public long getHardLinked() {
+        return hardLinked.get();
+    }
+
+    /**
+     * @return Number of files duplicated from another output with the same
+     * content, instead of rewritten
+     */
+    public long getDuplicated() {
+        return duplicated.get();
+    }
+
+    /**
+     * @return Bytes not rewritten, because they were duplicated
+     */
+    public long getSaved() {
+        return saved.get();
+    }
+
+    /**
+     * Resolved by name, because the templation may be read from an archive
+     */
+    private static Path target(Context context, Entry entry) {
+        return context.getTarget().resolve(entry.getTarget().toString());
+    }
+
+    /**
+     * @return {@code false} when the link can not be created, then the file
+     * must be copied
+     */
+    private static boolean hardLink(Path source, Path target) {
+        try{
+            Files.deleteIfExists(target);
+            Files.createLink(target, source);
+            return true;
+
+        }catch(IOException | UnsupportedOperationException e){
+            log.debug("Can not link {}, it will be copied", target, e);
+            return false;
+        }
+    }
+
+    void commit(Context context, Replacer replacer, Entry entry) throws IOException {
+
+        var source = context.getTemplate().resolve(entry.getSource());
+        var target = target(context, entry);
+
+        switch(entry.getAction()){
+            case COPY:
+                // a writable source would be changed through the new project
+                if(hardLinks && FileUtil.readOnly(source) && hardLink(source, target)){
+                    hardLinked.incrementAndGet();
+                    break;
+                }
+
+                if(source.getFileSystem().equals(target.getFileSystem())){
+                    FileUtil.transfer(source, target);
+
+                } else {
+                    Files.copy(source, target, StandardCopyOption.COPY_ATTRIBUTES,
+                        StandardCopyOption.REPLACE_EXISTING);
+
+                    // copies between providers carry just the times
+                    FileContentProcessor.written(source, target);
+                }
+                copied.incrementAndGet();
+                break;
+
+            case REWRITE:
+                content.rewrite(replacer, source, target);
+                rewritten.incrementAndGet();
+                break;
+
+            case DUPLICATE:
+                // the original is already written, see process
+                var original = context.getTarget().resolve(entry.getOriginal().toString());
+                if(!(context.getOptions().isLink() && FileUtil.readOnly(original)
+                    && hardLink(original, target))){
+                    FileUtil.transfer(original, target);
+                }
+                duplicated.incrementAndGet();
+                saved.addAndGet(entry.getBytes());
+                break;
+
+            case LINK:
+                Files.deleteIfExists(target);
+                Files.createSymbolicLink(target, Files.readSymbolicLink(source));
+                linked.incrementAndGet();
+                break;
+
+            default:
+                log.debug("Nothing to commit {}", entry);
+        }
+    }
+
+    @Override
+    public void process(Context context) {
+
+        var replacer = Replacer.create(context.getPlaceholders().entries());
+
+        // links just within the same file store
+        hardLinks = context.getOptions().isLink()
+            && context.getTemplate().getFileSystem().equals(context.getTarget().getFileSystem())
+            && FileUtil.sameFileStore(context.getTemplate(), context.getTarget());
+
+        if(context.getOptions().isLink() && !hardLinks){
+            log.warn("Templation in another file system, files will be copied instead of linked");
+        }
+
+        try{
+            // parents come first
+            Files.createDirectories(context.getTarget());
+            for(var entry : plan.getEntries()){
+                if(Action.DIRECTORY == entry.getAction()){
+                    Files.createDirectories(target(context, entry));
+                }
+            }
+        }catch(IOException e){
+            throw new UncheckedIOException(e);
+        }
+
+        var files = plan.getEntries().stream()
+            .filter(e -> Action.DIRECTORY != e.getAction())
+            .filter(e -> Action.SKIP != e.getAction())
+            .filter(e -> Action.DUPLICATE != e.getAction())
+            .collect(Collectors.toList());
+
+        if(Execution.PIPELINE == context.getOptions().getExecution()){
+
+            // the rewrites flow through the pipeline, the others as usual
+            Map<Path, Entry> rewrites = files.stream()
+                .filter(e -> Action.REWRITE == e.getAction())
+                .collect(Collectors.toMap(
+                    e -> context.getTemplate().resolve(e.getSource()),
+                    Function.identity()));
+
+            UnaryOperator<Path> targets = source -> target(context, rewrites.get(source));
+
+            new ContentPipeline(replacer, context.getOptions(),
+                source -> commit(context, replacer, rewrites.get(source)),
+                (source, bytes) -> {
+                    if(Sniffer.wide(bytes).isPresent()){
+                        commit(context, replacer, rewrites.get(source));
+                        return false;
+                    }
+                    rewritten.incrementAndGet();
+                    return true;
+                })
+            .run(new ArrayList<>(rewrites.keySet()), targets);
+
+            files = files.stream()
+                .filter(e -> Action.REWRITE != e.getAction())
+                .collect(Collectors.toList());
+        }
+
+        FileTasks.run(files, context.getOptions(), e -> commit(context, replacer, e));
+
+        // after their originals were written
+        var duplicates = plan.getEntries().stream()
+            .filter(e -> Action.DUPLICATE == e.getAction())
+            .collect(Collectors.toList());
+
+        FileTasks.run(duplicates, context.getOptions(), e -> commit(context, replacer, e));
+
+        log.info("Plan committed: {} rewritten, {} copied, {} hard links, {} links, {} duplicates, {} bytes saved",
+            rewritten, copied, hardLinked, linked, duplicated, saved);
+    }
+}
@@ -0,0 +1,274 @@
+package io.github.fabiojose.snip.processor;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
+
+import io.github.fabiojose.snip.context.Options;
+import io.github.fabiojose.snip.util.FileUtil;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Rewrites file content through three stages connected by bounded queues:
+ * the reader loads whole files, the transformers replace the placeholders
+ * and the writer replaces the files. So, the reading, the scanning and the
+ * writing of different files overlap.
+ * <p>
+ * A full queue blocks the stage before it, which bounds the memory in use.
+ * Buffers are pooled and reused from file to file.
+ * <p>
+ * Files bigger than {@link #MAX_BUFFERED} do not fit the pipeline and they
+ * are processed directly by the reader.
+ *
+ * @author fabiojose
+ */
+@Slf4j
+class ContentPipeline {
+
+    static final int MAX_BUFFERED = 1024 * 1024;
+
+    private static final int QUEUE_CAPACITY = 16;
+
+    private static final int INITIAL_BUFFER_SIZE = 8192;
+
+    /**
+     * Decides what to do with the file content, already read
+     */
+    @FunctionalInterface
+    interface Admission {
+
+        /**
+         * @return {@code true} when the content must be rewritten by the
+         * pipeline, {@code false} when the file was handled by the admission
+         */
+        boolean admit(Path file, ByteBuffer content) throws IOException;
+    }
+
+    /**
+     * Growable byte buffer, reused between files
+     */
+    static class Buffer extends ByteArrayOutputStream {
+
+        Buffer() {
+            super(INITIAL_BUFFER_SIZE);
+        }
+
+        void fill(Path file, long size) throws IOException {
+            reset();
+            if(buf.length <= size){
+                buf = new byte[(int)size + 1];
+            }
+
+            try(var in = Files.newInputStream(file)){
+                int read;
+                while((read = in.read(buf, count, buf.length - count)) != -1){
+                    count += read;
+                    if(count == buf.length){
+                        // the file has grown since its size was taken
+                        buf = Arrays.copyOf(buf, buf.length * 2);
+                    }
+                }
+            }
+        }
+
+        ByteBuffer content() {
+            return ByteBuffer.wrap(buf, 0, count);
+        }
+
+        void feed(Replacer.ByteScan scan) throws IOException {
+            scan.feed(buf, 0, count);
+        }
+    }
+
+    private static class Job {
+        private static final Job END = new Job(null, null, null);
+
+        private final Path source;
+        private final Path target;
+        private final Buffer buffer;
+
+        Job(Path source, Path target, Buffer buffer) {
+            this.source = source;
+            this.target = target;
+            this.buffer = buffer;
+        }
+    }
+
+    private final Replacer replacer;
+    private final FileTasks.Task<Path> direct;
+    private final Admission admission;
+
+    private final int transformers;
+
+    private final BlockingQueue<Job> read = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final BlockingQueue<Job> transformed = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+
+    // never blocks: the queues bound how many buffers are in use
+    private final BlockingQueue<Buffer> pool;
+
+    private final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+
+    /**
+     * @param direct To process the files that do not fit the pipeline
+     * @param admission To process the content read, before the rewriting
+     */
+    ContentPipeline(Replacer replacer, Options options, FileTasks.Task<Path> direct,
+        Admission admission) {
+
+        this.replacer = Objects.requireNonNull(replacer);
+        this.direct = Objects.requireNonNull(direct);
+        this.admission = Objects.requireNonNull(admission);
+
+        // the reader and the writer take one thread each
+        this.transformers = Math.max(1, options.getParallelism() - 2);
+        this.pool = new ArrayBlockingQueue<>(QUEUE_CAPACITY * 2 + transformers * 2 + 2);
+    }
+
+    private Buffer borrow() {
+        var buffer = pool.poll();
+        return null!= buffer ? buffer : new Buffer();
+    }
+
+    private void release(Buffer buffer) {
+        pool.offer(buffer);
+    }
+
+    private void read(List<Path> files, UnaryOperator<Path> targets)
+        throws IOException, InterruptedException {
+
+        try{
+            for(var file : files){
+
+                var size = Files.size(file);
+                if(size > MAX_BUFFERED){
+                    log.debug("File too big to be buffered, processing directly {}", file);
+                    direct.run(file);
+                    continue;
+                }
+
+                var buffer = borrow();
+                buffer.fill(file, size);
+
+                if(admission.admit(file, buffer.content())){
+                    read.put(new Job(file, targets.apply(file), buffer));
+                } else {
+                    release(buffer);
+                }
+            }
+        }finally{
+            for(int i = 0; i < transformers; i++){
+                read.put(Job.END);
+            }
+        }
+    }
+
+    private void transform() throws IOException, InterruptedException {
+
+        try{
+            Job job;
+            while((job = read.take()) != Job.END){
+                var in = job.buffer;
+                var out = borrow();
+                out.reset();
+
+                var scan = replacer.scan(out, () -> Sniffer.charset(in.content()));
+                in.feed(scan);
+                scan.finish();
+
+                release(in);
+                transformed.put(new Job(job.source, job.target, out));
+            }
+        }finally{
+            transformed.put(Job.END);
+        }
+    }
+
+    private void write() throws IOException, InterruptedException {
+
+        int ended = 0;
+        while(ended < transformers){
+            var job = transformed.take();
+            if(job == Job.END){
+                ended++;
+                continue;
+            }
+
+            FileUtil.writeAtomically(job.target, job.buffer::writeTo);
+            FileContentProcessor.written(job.source, job.target);
+            release(job.buffer);
+        }
+    }
+
+    @FunctionalInterface
+    private interface Stage {
+        void run() throws IOException, InterruptedException;
+    }
+
+    private void submit(ExecutorService executor, Stage stage) {
+        executor.execute(() -> {
+            try{
+                stage.run();
+            }catch(IOException e){
+                fail(executor, new UncheckedIOException(e));
+            }catch(RuntimeException e){
+                fail(executor, e);
+            }catch(InterruptedException e){
+                // cancelled by a failure in another stage
+                Thread.currentThread().interrupt();
+            }
+        });
+    }
+
+    private void fail(ExecutorService executor, RuntimeException e) {
+        failure.compareAndSet(null, e);
+        executor.shutdownNow();
+    }
+
+    /**
+     * Rewrites each source file into its target
+     *
+     * @throws UncheckedIOException When some stage fails because of i/o
+     */
+    void run(List<Path> files, UnaryOperator<Path> targets) {
+        Objects.requireNonNull(files);
+        Objects.requireNonNull(targets);
+
+        log.debug("Running pipeline for {} files with {} transformers",
+            files.size(), transformers);
+
+        var executor = Executors.newFixedThreadPool(transformers + 2);
+        submit(executor, () -> read(files, targets));
+        for(int i = 0; i < transformers; i++){
+            submit(executor, this::transform);
+        }
+        submit(executor, this::write);
+
+        executor.shutdown();
+        try{
+            while(!executor.awaitTermination(1, TimeUnit.MINUTES)){
+                log.debug("Waiting for pipeline");
+            }
+        }catch(InterruptedException e){
+            Thread.currentThread().interrupt();
+            fail(executor, new IllegalStateException("Interrupted", e));
+        }
+
+        var failure = this.failure.get();
+        if(null!= failure){
+            throw failure;
+        }
+    }
+}
@@ -1,62 +1,76 @@
 package io.github.fabiojose.snip.processor;
 
-import java.io.File;
+import java.io.BufferedWriter;
 import java.io.IOException;
-import java.io.UncheckedIOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
 import java.nio.file.Files;
-import java.util.UUID;
+import java.nio.file.Path;
 
-import org.apache.commons.io.FileUtils;
-import org.unix4j.Unix4j;
-import org.unix4j.unix.sed.SedOption;
-
-import io.github.fabiojose.snip.context.Context;
+import io.github.fabiojose.snip.util.FileUtil;
 import lombok.extern.slf4j.Slf4j;
 
 /**
+ * Rewrites the content of files with placeholders, from their source in
+ * the templation to their target in the new project.
+ *
  * @author fabiojose
  */
 @Slf4j
-public class FileContentProcessor implements Processor {
+class FileContentProcessor {
 
     FileContentProcessor(){}
 
-    @Override
-    public void process(Context context) {
-
-        try{
-            Files.walk(context.getTarget())
-                .filter(context.getInclude()::it)
-                .filter(Files::isRegularFile)
-                .peek(f -> log.debug("File to process its content {}", f.toAbsolutePath()))
-                .forEach(f -> {
-                    try{
+    /**
+     * Streams the raw bytes of the source once through the replacer, into a
+     * sibling that replaces the target. Bytes out of placeholders are never
+     * decoded nor encoded, so they are kept exactly as they were. The heap
+     * usage does not grow with the file size.
+     */
+    void rewrite(Replacer replacer, Path source, Path target) throws IOException {
 
-                        var tmpDir = new File(FileUtils.getTempDirectory(),
-                            context.getPlaceholders().getName());
+        if(Sniffer.wide(source).isPresent()){
+            rewriteWide(replacer, source, target);
+            return;
+        }
 
-                        FileUtils.forceMkdir(tmpDir);
+        FileUtil.writeAtomically(target, out -> {
+            try(var in = Files.newInputStream(source)){
+                replacer.replace(in, out, () -> Sniffer.charset(source));
+            }
+        });
+        written(source, target);
+    }
 
-                        var tmpFile = new File(tmpDir, UUID.randomUUID().toString());
-                        FileUtils.copyFile(f.toFile(), tmpFile, false);
+    void rewrite(Replacer replacer, Path file) throws IOException {
+        rewrite(replacer, file, file);
+    }
 
-                        var command = Unix4j.fromFile(tmpFile);
+    /**
+     * For files encoded in UTF-16 or UTF-32, whose placeholders are not made
+     * of contiguous ASCII bytes. The byte order mark is kept as a char.
+     */
+    private void rewriteWide(Replacer replacer, Path source, Path target) throws IOException {
 
-                        context.getPlaceholders().entries().entrySet().stream()
-                            .peek(ph -> log.debug("Placeholder for file content {}", ph))
-                            .forEach(ph -> {
-                                command.sed(SedOption.substitute, ph.getKey(), ph.getValue());
-                            });
+        var charset = Sniffer.wide(source).orElseThrow();
+        log.debug("Wide encoded file {} {}", charset, source);
 
-                        command.toFile(f.toFile());
+        FileUtil.writeAtomically(target, out -> {
+            try(var in = new InputStreamReader(Files.newInputStream(source), charset)){
 
-                    }catch(IOException e){
-                        throw new UncheckedIOException(e);
-                    }
-                });
+                var writer = new BufferedWriter(new OutputStreamWriter(out, charset));
+                replacer.replace(in, writer);
+            }
+        });
+        written(source, target);
+    }
 
-        }catch(IOException e){
-            throw new UncheckedIOException(e);
+    /**
+     * The target written from another source gets the source permissions
+     */
+    static void written(Path source, Path target) throws IOException {
+        if(!source.equals(target)){
+            FileUtil.copyPermissions(source, target);
         }
     }
 }
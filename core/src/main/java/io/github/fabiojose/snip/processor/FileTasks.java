@@ -0,0 +1,208 @@
+package io.github.fabiojose.snip.processor;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+
+import io.github.fabiojose.snip.context.Options;
+import io.github.fabiojose.snip.context.Options.Execution;
+import io.github.fabiojose.snip.util.ThreadUtil;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Runs one task per file over a work-stealing pool, as defined by
+ * {@link Options#getParallelism()} and {@link Options#getMaxOpenFiles()},
+ * or over virtual threads when {@link Options#getExecution()} asks for.
+ * <p>
+ * The first failure cancels the tasks not started yet and it is thrown to
+ * the caller, after the running ones finish.
+ *
+ * @author fabiojose
+ */
+@Slf4j
+class FileTasks<T> {
+
+    /**
+     * Slices per worker, to give room for stealing when files have
+     * very different sizes
+     */
+    private static final int SLICES_PER_WORKER = 8;
+
+    @FunctionalInterface
+    interface Task<T> {
+        void run(T file) throws IOException;
+    }
+
+    private final List<T> files;
+    private final Task<T> task;
+
+    private final Semaphore open;
+    private final int batch;
+
+    private final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+
+    private FileTasks(List<T> files, Task<T> task, int parallelism, int maxOpenFiles) {
+        this.files = files;
+        this.task = task;
+        this.open = new Semaphore(maxOpenFiles);
+        this.batch = Math.max(1, files.size() / (parallelism * SLICES_PER_WORKER));
+    }
+
+    /**
+     * @throws UncheckedIOException When some task fails because of i/o
+     */
+    static <T> void run(List<T> files, Options options, Task<T> task) {
+        Objects.requireNonNull(files);
+        Objects.requireNonNull(task);
+
+        if(Execution.VIRTUAL_THREADS == options.getExecution()){
+            var executor = ThreadUtil.newVirtualThreadPerTaskExecutor();
+            if(executor.isPresent()){
+                runVirtual(files, options, task, executor.get());
+                return;
+            }
+            log.warn("Virtual threads are not available on Java {}, using fork-join",
+                Runtime.version().feature());
+        }
+
+        var parallelism = options.getParallelism();
+        if(parallelism <= 1 || files.size() <= 1){
+            for(var file : files){
+                runOne(task, file);
+            }
+            return;
+        }
+
+        log.debug("Running {} file tasks with parallelism {} and at most {} open files",
+            files.size(), parallelism, options.getMaxOpenFiles());
+
+        var tasks = new FileTasks<>(files, task, parallelism, options.getMaxOpenFiles());
+        var pool = new ForkJoinPool(parallelism);
+        try{
+            pool.invoke(tasks.new Slice(0, files.size()));
+        }catch(RuntimeException e){
+            // the pool may throw a copy, prefer the original
+            tasks.failure.compareAndSet(null, e);
+        }finally{
+            pool.shutdownNow();
+        }
+
+        var failure = tasks.failure.get();
+        if(null!= failure){
+            throw failure;
+        }
+    }
+
+    private static <T> void runVirtual(List<T> files, Options options, Task<T> task,
+        ExecutorService executor) {
+
+        log.debug("Running {} file tasks over virtual threads and at most {} open files",
+            files.size(), options.getMaxOpenFiles());
+
+        var tasks = new FileTasks<>(files, task, 1, options.getMaxOpenFiles());
+        var futures = new ArrayList<Future<?>>(files.size());
+        try{
+            for(var file : files){
+                futures.add(executor.submit(() -> tasks.guarded(file)));
+            }
+
+            for(var future : futures){
+                try{
+                    future.get();
+                }catch(ExecutionException e){
+                    // recorded by guarded
+                    futures.forEach(f -> f.cancel(true));
+                }catch(CancellationException e){
+                    // cancelled by a failure
+                }
+            }
+
+        }catch(InterruptedException e){
+            Thread.currentThread().interrupt();
+            futures.forEach(f -> f.cancel(true));
+            tasks.failure.compareAndSet(null, new IllegalStateException("Interrupted", e));
+
+        }finally{
+            executor.shutdownNow();
+        }
+
+        var failure = tasks.failure.get();
+        if(null!= failure){
+            throw failure;
+        }
+    }
+
+    /**
+     * Runs the task within the max open files limit, unless some other
+     * has failed
+     */
+    private void guarded(T file) {
+
+        if(null!= failure.get()){
+            return;
+        }
+
+        try{
+            open.acquire();
+        }catch(InterruptedException e){
+            Thread.currentThread().interrupt();
+            failure.compareAndSet(null, new IllegalStateException("Interrupted", e));
+            return;
+        }
+
+        try{
+            if(null== failure.get()){
+                runOne(task, file);
+            }
+        }catch(RuntimeException e){
+            failure.compareAndSet(null, e);
+            throw e;
+        }finally{
+            open.release();
+        }
+    }
+
+    private static <T> void runOne(Task<T> task, T file) {
+        try{
+            task.run(file);
+        }catch(IOException e){
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private class Slice extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+
+        Slice(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+
+            if(to - from > batch){
+                var middle = (from + to) >>> 1;
+                invokeAll(new Slice(from, middle), new Slice(middle, to));
+                return;
+            }
+
+            for(int i = from; i < to && null== failure.get(); i++){
+                guarded(files.get(i));
+            }
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package io.github.fabiojose.snip.processor;
+
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import io.github.fabiojose.snip.context.Context;
+import io.github.fabiojose.snip.context.Placeholders;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Computes the final path of each entry of the tree, once, from the final
+ * path of its parent and its own name with the placeholders replaced.
+ * <p>
+ * Parents must be planned before their children, like a walk does.
+ * Within directory names, the {@code __namespace_} becomes a directory
+ * tree, within file names it is kept as it is.
+ *
+ * @author fabiojose
+ */
+@Slf4j
+class PathPlanner {
+
+    private static final String UNIX_FILE_SEPARATOR = "/";
+
+    private final Replacer folderNames;
+    private final Replacer fileNames;
+
+    // source directory -> its final path
+    private final Map<Path, Path> folders = new HashMap<>();
+
+    private PathPlanner(Replacer folderNames, Replacer fileNames) {
+        this.folderNames = folderNames;
+        this.fileNames = fileNames;
+    }
+
+    static PathPlanner create(Context context) {
+
+        var entries = context.getPlaceholders().entries();
+
+        var folderEntries = entries.entrySet().stream()
+            .collect(Collectors.toMap(Map.Entry::getKey, kv ->
+                Context.NAMESPACE_PARAM.equals(kv.getKey())
+                    ? kv.getValue().replaceAll("\\.", UNIX_FILE_SEPARATOR)
+                    : kv.getValue()));
+
+        return new PathPlanner(Replacer.create(folderEntries), Replacer.create(entries));
+    }
+
+    private static String rename(Replacer replacer, String name) {
+
+        // most of names do not have placeholders at all
+        if(!Placeholders.PLACEHOLDER_PATTERN.matcher(name).find()){
+            return name;
+        }
+        return replacer.replace(name);
+    }
+
+    private Path parent(Path source) {
+        var parent = source.getParent();
+        return folders.getOrDefault(parent, parent);
+    }
+
+    /**
+     * @return {@code true} when the target keeps the source name, just
+     * following the final path of its parent
+     */
+    boolean follows(Path source, Path target) {
+        return parent(source).resolve(source.getFileName().toString()).equals(target);
+    }
+
+    private Path plan(Path source, Replacer replacer, boolean rename) {
+
+        var name = source.getFileName().toString();
+
+        var target = parent(source)
+            .resolve(rename ? rename(replacer, name) : name);
+
+        if(!target.equals(source)){
+            log.debug("Planned {} -> {}", source, target);
+        }
+        return target;
+    }
+
+    /**
+     * @param rename {@code true} to replace the placeholders in its name,
+     * {@code false} to keep the name, just following the parent
+     * @return The final path of directory
+     */
+    Path folder(Path source, boolean rename) {
+
+        var target = plan(source, folderNames, rename);
+        folders.put(source, target);
+
+        return target;
+    }
+
+    /**
+     * @param rename {@code true} to replace the placeholders in its name,
+     * {@code false} to keep the name, just following the parent
+     * @return The final path of file
+     */
+    Path file(Path source, boolean rename) {
+        return plan(source, fileNames, rename);
+    }
+}
@@ -0,0 +1,363 @@
+package io.github.fabiojose.snip.processor;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import com.google.gson.GsonBuilder;
+
+import org.apache.commons.io.FilenameUtils;
+
+import io.github.fabiojose.snip.context.Context;
+import io.github.fabiojose.snip.util.FileUtil;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * What scaffolding a templation does, entry by entry, computed without
+ * writing anything. The {@link Processor#forCommit(Plan) commit} executes it.
+ *
+ * @author fabiojose
+ */
+@Slf4j
+public class Plan {
+
+    static final String GIT_DIR = ".git";
+
+    public enum Action {
+        /**
+         * Creates the directory, even if empty
+         */
+        DIRECTORY,
+
+        /**
+         * Copies byte-for-byte: binaries, files without placeholders and
+         * files ignored by {@code .snipignore}
+         */
+        COPY,
+
+        /**
+         * Writes the content with the placeholders replaced
+         */
+        REWRITE,
+
+        /**
+         * Creates a symbolic link with the same target
+         */
+        LINK,
+
+        /**
+         * Copies, or hard links in link mode, the output of an entry to
+         * rewrite with the same content and permissions, instead of
+         * rewriting it again
+         */
+        DUPLICATE,
+
+        /**
+         * Not part of the new project
+         */
+        SKIP
+    }
+
+    @Getter
+    @ToString
+    @AllArgsConstructor(access = AccessLevel.PRIVATE)
+    public static class Entry {
+
+        /**
+         * Relative to the templation root
+         */
+        private final Path source;
+
+        /**
+         * Relative to the new project root, but from the file system of
+         * templation, that may be an archive
+         */
+        private final Path target;
+
+        private final Action action;
+
+        /**
+         * Estimated bytes to write
+         */
+        private final long bytes;
+
+        /**
+         * Target of the entry whose output is duplicated, just for
+         * {@link Action#DUPLICATE}
+         */
+        private final Path original;
+
+        private Entry(Path source, Path target, Action action, long bytes) {
+            this(source, target, action, bytes, null);
+        }
+    }
+
+    @Getter
+    private List<Entry> entries;
+
+    private Plan() {}
+
+    /**
+     * @return Estimated bytes to write
+     */
+    public long bytes() {
+        return entries.stream()
+            .mapToLong(Entry::getBytes)
+            .sum();
+    }
+
+    /**
+     * @return Bytes that are not rewritten, because they are duplicated
+     */
+    public long saved() {
+        return entries.stream()
+            .filter(e -> Action.DUPLICATE == e.getAction())
+            .mapToLong(Entry::getBytes)
+            .sum();
+    }
+
+    /**
+     * @return Number of entries by action
+     */
+    public Map<Action, Long> count() {
+        return entries.stream()
+            .collect(Collectors.groupingBy(Entry::getAction,
+                () -> new EnumMap<>(Action.class), Collectors.counting()));
+    }
+
+    private static String unix(Path path) {
+        return FilenameUtils.separatorsToUnix(path.toString());
+    }
+
+    /**
+     * Writes this plan as JSON
+     */
+    public void write(Path file) {
+
+        var result = new LinkedHashMap<String, Object>();
+        result.put("bytes", bytes());
+        result.put("saved", saved());
+        result.put("count", count());
+        result.put("entries", entries.stream()
+            .map(e -> {
+                var entry = new LinkedHashMap<String, Object>();
+                entry.put("source", unix(e.getSource()));
+                entry.put("target", unix(e.getTarget()));
+                entry.put("action", e.getAction());
+                entry.put("bytes", e.getBytes());
+                Optional.ofNullable(e.getOriginal())
+                    .ifPresent(o -> entry.put("original", unix(o)));
+                return entry;
+            })
+            .collect(Collectors.toList()));
+
+        var json = new GsonBuilder()
+            .setPrettyPrinting()
+            .create()
+            .toJson(result);
+
+        try{
+            Files.writeString(file, json, StandardCharsets.UTF_8);
+            log.debug("Plan written to {}", file);
+        }catch(IOException e){
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return What makes two rewrites render the same output: the content
+     * and the permissions
+     */
+    private static String identity(Path file) throws IOException {
+
+        var result = FileUtil.digest(file);
+
+        var posix = Files.getFileAttributeView(file, PosixFileAttributeView.class);
+        if(null!= posix){
+            result += PosixFilePermissions.toString(posix.readAttributes().permissions());
+        }
+        return result;
+    }
+
+    /**
+     * The rewrites with same content and permissions, but the first, become
+     * duplicates of it. Just the files with same size are read.
+     */
+    private static void duplicates(Path template, List<Entry> entries,
+        List<Integer> candidates, Context context) {
+
+        var sizes = candidates.stream()
+            .filter(i -> Action.REWRITE == entries.get(i).getAction())
+            .filter(i -> entries.get(i).getBytes() > 0)
+            .collect(Collectors.groupingBy(i -> entries.get(i).getBytes(),
+                LinkedHashMap::new, Collectors.toList()));
+
+        var same = sizes.values().stream()
+            .filter(group -> group.size() > 1)
+            .collect(Collectors.toList());
+
+        var identities = new ConcurrentHashMap<Integer, String>();
+        FileTasks.run(same.stream().flatMap(List::stream).collect(Collectors.toList()),
+            context.getOptions(), i ->
+                identities.put(i, identity(template.resolve(entries.get(i).getSource()))));
+
+        for(var group : same){
+            var originals = new HashMap<String, Integer>();
+            for(var i : group){
+                var original = originals.putIfAbsent(identities.get(i), i);
+                if(null!= original){
+                    var entry = entries.get(i);
+                    entries.set(i, new Entry(entry.getSource(), entry.getTarget(),
+                        Action.DUPLICATE, entry.getBytes(), entries.get(original).getTarget()));
+                }
+            }
+        }
+    }
+
+    /**
+     * Walks the templation, planning the final path and the action of each
+     * entry, and sniffs the files to tell which ones have placeholders.
+     */
+    public static Plan create(Context context) {
+
+        var template = context.getTemplate();
+        var include = context.getInclude();
+        var planner = PathPlanner.create(context);
+
+        // the templation is read in place, the new project may be within it
+        var output = template.getFileSystem().equals(context.getTarget().getFileSystem())
+            ? context.getTarget().toAbsolutePath().normalize()
+            : null;
+
+        var entries = new ArrayList<Entry>();
+
+        // positions of files that may have placeholders
+        var candidates = new ArrayList<Integer>();
+
+        try{
+            Files.walkFileTree(template, new SimpleFileVisitor<>() {
+
+                // depth within an ignored subtree
+                private int ignored;
+
+                private void add(Path source, Path target, Action action, long bytes) {
+                    entries.add(new Entry(template.relativize(source),
+                        template.relativize(target), action, bytes));
+                }
+
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+
+                    if(dir.equals(template)){
+                        return FileVisitResult.CONTINUE;
+                    }
+
+                    if(template.relativize(dir).toString().equals(GIT_DIR)
+                        || dir.toAbsolutePath().normalize().equals(output)){
+                        add(dir, dir, Action.SKIP, 0);
+                        return FileVisitResult.SKIP_SUBTREE;
+                    }
+
+                    /*
+                     * nothing within an ignored subtree is renamed nor rewritten.
+                     * Out of them, the parents are included, so just the last
+                     * segment is evaluated.
+                     */
+                    if(ignored > 0 || !include.directory(dir)){
+                        ignored++;
+                        add(dir, planner.folder(dir, false), Action.DIRECTORY, 0);
+                        return FileVisitResult.CONTINUE;
+                    }
+
+                    var target = planner.folder(dir, true);
+                    add(dir, target, Action.DIRECTORY, 0);
+
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult postVisitDirectory(Path dir, IOException e)
+                    throws IOException {
+
+                    if(null!= e){
+                        throw e;
+                    }
+                    if(ignored > 0){
+                        ignored--;
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+
+                    if(attrs.isSymbolicLink()){
+                        add(file, planner.file(file, ignored == 0 && include.file(file)),
+                            Action.LINK, 0);
+
+                    } else if(attrs.isRegularFile()){
+                        var included = ignored == 0 && include.file(file);
+                        var target = planner.file(file, included);
+
+                        if(included && !context.getBinary().declared(template.relativize(file))){
+                            candidates.add(entries.size());
+                            add(file, target, Action.REWRITE, attrs.size());
+                        } else {
+                            add(file, target, Action.COPY, attrs.size());
+                        }
+
+                    } else {
+                        log.debug("Not a regular file, skipping {}", file);
+                        add(file, file, Action.SKIP, 0);
+                    }
+
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+
+            // just the files with placeholders are rewritten
+            FileTasks.run(candidates, context.getOptions(), i -> {
+                var entry = entries.get(i);
+                var kind = Sniffer.sniff(template.resolve(entry.getSource()));
+
+                if(Sniffer.Kind.TEMPLATE != kind && Sniffer.Kind.WIDE != kind){
+                    entries.set(i, new Entry(entry.getSource(), entry.getTarget(),
+                        Action.COPY, entry.getBytes()));
+                }
+            });
+
+            duplicates(template, entries, candidates, context);
+
+        }catch(IOException e){
+            throw new UncheckedIOException(e);
+        }
+
+        var result = new Plan();
+        result.entries = Collections.unmodifiableList(entries);
+
+        log.debug("Plan created {}, {} bytes, {} bytes saved", result.count(),
+            result.bytes(), result.saved());
+        return result;
+    }
+}
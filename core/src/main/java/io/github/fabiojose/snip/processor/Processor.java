@@ -9,16 +9,10 @@ public interface Processor {
 
     void process(Context context);
 
-    static Processor forDirectories() {
-        return new DirectoryNameProcessor();
-    }
-
-
-    static Processor forFiles() {
-        return new FileNameProcessor();
-    }
-
-    static Processor forContent() {
-        return new FileContentProcessor();
+    /**
+     * Writes the new project as planned
+     */
+    static Processor forCommit(Plan plan) {
+        return new CommitProcessor(plan);
     }
 }
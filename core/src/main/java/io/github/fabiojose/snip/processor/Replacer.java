@@ -0,0 +1,511 @@
+package io.github.fabiojose.snip.processor;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+/**
+ * Replaces every placeholder of a map within a stream of text or raw
+ * bytes, in a single pass.
+ * <p>
+ * All placeholder names are compiled once into an Aho-Corasick automaton
+ * and each input is scanned just one time, no matter how many placeholders
+ * there are. Symbols are scanned again just after a match, when they were
+ * read while looking for a longer one. When
+ * names overlap, the leftmost and then the longest one wins. Values are
+ * always written as they are, never interpreted as regex replacements.
+ *
+ * @author fabiojose
+ */
+class Replacer {
+
+    /**
+     * Placeholder names follow {@code Placeholders#PLACEHOLDER_PATTERN},
+     * so they are always ASCII
+     */
+    private static final int ALPHABET = 128;
+
+    private static final int NONE = -1;
+
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * Transitions of the automaton, with the failures already followed, so
+     * every symbol is one lookup
+     */
+    private final int[][] next;
+
+    // length of the string of each state
+    private final int[] depth;
+
+    // the longest key ending at each state
+    private final int[] output;
+
+    private final String[] keys;
+    private final String[] values;
+
+    private final int longest;
+
+    private Replacer(int[][] next, int[] depth, int[] output, String[] keys,
+        String[] values, int longest) {
+
+        this.next = next;
+        this.depth = depth;
+        this.output = output;
+        this.keys = keys;
+        this.values = values;
+        this.longest = longest;
+    }
+
+    /**
+     * @throws IllegalArgumentException When some placeholder name is empty or is not ASCII
+     */
+    static Replacer create(Map<String, String> placeholders) {
+        Objects.requireNonNull(placeholders);
+
+        var keys = new String[placeholders.size()];
+        var values = new String[placeholders.size()];
+
+        int index = 0;
+        for(var kv : placeholders.entrySet()){
+            keys[index] = Objects.requireNonNull(kv.getKey());
+            values[index] = Objects.requireNonNull(kv.getValue());
+            index++;
+        }
+
+        // root plus, at most, one state per char of each key
+        int capacity = 1 + Arrays.stream(keys).mapToInt(String::length).sum();
+        var next = new int[capacity][];
+        var depth = new int[capacity];
+        var output = new int[capacity];
+        Arrays.fill(output, NONE);
+
+        next[0] = newState();
+        int states = 1;
+        int longest = 0;
+
+        for(int k = 0; k < keys.length; k++) {
+            var key = keys[k];
+            if(key.isEmpty()){
+                throw new IllegalArgumentException("Empty placeholder");
+            }
+
+            int state = 0;
+            for(int i = 0; i < key.length(); i++){
+                var c = key.charAt(i);
+                if(c >= ALPHABET){
+                    throw new IllegalArgumentException("Non-ASCII placeholder: " + key);
+                }
+
+                if(next[state][c] == NONE){
+                    next[states] = newState();
+                    depth[states] = depth[state] + 1;
+                    next[state][c] = states++;
+                }
+                state = next[state][c];
+            }
+
+            output[state] = k;
+            longest = Math.max(longest, key.length());
+        }
+
+        failures(next, output, states);
+
+        return new Replacer(Arrays.copyOf(next, states), Arrays.copyOf(depth, states),
+            Arrays.copyOf(output, states), keys, values, longest);
+    }
+
+    /**
+     * Turns the trie into the Aho-Corasick automaton, breadth first: the
+     * missing transitions go where the failure of the state goes, and each
+     * state outputs its own key or the one of its failure.
+     */
+    private static void failures(int[][] next, int[] output, int states) {
+
+        var failure = new int[states];
+        var queue = new int[states];
+        int head = 0;
+        int tail = 0;
+
+        for(int c = 0; c < ALPHABET; c++){
+            if(next[0][c] == NONE){
+                next[0][c] = 0;
+            } else {
+                queue[tail++] = next[0][c];
+            }
+        }
+
+        while(head < tail){
+            var state = queue[head++];
+            var fail = failure[state];
+
+            if(output[state] == NONE){
+                output[state] = output[fail];
+            }
+
+            for(int c = 0; c < ALPHABET; c++){
+                var child = next[state][c];
+                if(child == NONE){
+                    next[state][c] = next[fail][c];
+                } else {
+                    failure[child] = next[fail][c];
+                    queue[tail++] = child;
+                }
+            }
+        }
+    }
+
+    private static int[] newState() {
+        var state = new int[ALPHABET];
+        Arrays.fill(state, NONE);
+        return state;
+    }
+
+    /**
+     * @return The text with all placeholders replaced
+     */
+    String replace(String text) {
+        var out = new StringWriter(text.length());
+        try{
+            replace(new StringReader(text), out);
+        }catch(IOException e){
+            // never happens with in-memory reader and writer
+            throw new IllegalStateException(e);
+        }
+        return out.toString();
+    }
+
+    /**
+     * Copies the input to the output replacing all placeholders.
+     * Neither the reader nor the writer are closed.
+     */
+    void replace(Reader in, Writer out) throws IOException {
+
+        var scan = scan(out);
+        var buffer = new char[BUFFER_SIZE];
+
+        int read;
+        while((read = in.read(buffer)) != -1){
+            scan.feed(buffer, 0, read);
+        }
+
+        scan.finish();
+    }
+
+    /**
+     * Copies the input to the output replacing all placeholders, byte by
+     * byte. Neither the input nor the output are closed.
+     *
+     * @param charset Called once, and just when some value is not ASCII
+     */
+    void replace(InputStream in, OutputStream out, Supplier<Charset> charset)
+        throws IOException {
+
+        var scan = scan(out, charset);
+        var buffer = new byte[BUFFER_SIZE];
+
+        int read;
+        while((read = in.read(buffer)) != -1){
+            scan.feed(buffer, 0, read);
+        }
+
+        scan.finish();
+    }
+
+    CharScan scan(Writer out) {
+        return new CharScan(out);
+    }
+
+    ByteScan scan(OutputStream out, Supplier<Charset> charset) {
+        return new ByteScan(out, charset);
+    }
+
+    /**
+     * The state of one pass over one input. Since it keeps the partial
+     * match between calls, the input may be fed in chunks of any size.
+     * <p>
+     * Placeholder names are ASCII, so the scan works the same way over
+     * chars or over the bytes of any ASCII compatible encoding.
+     */
+    abstract class Scan {
+
+        /*
+         * symbols not written yet, from the start of the current state: the
+         * ones already scanned, then the ones to scan again after a match
+         */
+        private final char[] ring = new char[longest + 1];
+        private int head = 0;
+        private int scanned = 0;
+        private int queued = 0;
+
+        private int state = 0;
+
+        // the leftmost, then longest, match within the scanned symbols
+        private int candidate = NONE;
+        private int candidateStart = 0;
+
+        /**
+         * Writes one symbol that is not part of any placeholder
+         */
+        abstract void write(char symbol) throws IOException;
+
+        /**
+         * Writes the value of the placeholder
+         */
+        abstract void value(int key) throws IOException;
+
+        abstract void flush() throws IOException;
+
+        /**
+         * @return {@code true} when the symbol can not start any
+         * placeholder and the scan is not within a partial match
+         */
+        final boolean passThrough(int symbol) {
+            return state == 0 && (symbol >= ALPHABET || next[0][symbol] == 0);
+        }
+
+        private char at(int offset) {
+            return ring[(head + offset) % ring.length];
+        }
+
+        private void drop(int count) {
+            head = (head + count) % ring.length;
+        }
+
+        final void feed(char c) throws IOException {
+
+            ring[(head + scanned + queued) % ring.length] = c;
+            queued++;
+
+            while(queued > 0){
+                step(at(scanned));
+            }
+        }
+
+        /**
+         * One transition of the automaton. The scanned symbols that no
+         * placeholder can start with anymore are written as they are.
+         */
+        private void step(char c) throws IOException {
+
+            int to = c < ALPHABET ? next[state][c] : 0;
+
+            // where the string of the next state starts, within the scanned
+            int start = scanned + 1 - depth[to];
+
+            if(candidate != NONE && candidateStart < start){
+                // no placeholder starts before it, nor it gets longer
+                match();
+                return;
+            }
+
+            queued--;
+            scanned++;
+
+            for(int i = 0; i < start; i++){
+                write(at(i));
+            }
+            drop(start);
+            scanned -= start;
+            candidateStart -= start;
+            state = to;
+
+            var key = output[state];
+            if(key != NONE){
+                int keyStart = scanned - keys[key].length();
+                if(candidate == NONE || keyStart < candidateStart
+                    || (keyStart == candidateStart
+                        && keys[key].length() > keys[candidate].length())){
+
+                    candidate = key;
+                    candidateStart = keyStart;
+                }
+            }
+        }
+
+        /**
+         * Writes the symbols before the candidate and its value. The ones
+         * scanned after it are scanned again, from the root, because a
+         * placeholder may start within them.
+         */
+        private void match() throws IOException {
+
+            for(int i = 0; i < candidateStart; i++){
+                write(at(i));
+            }
+            value(candidate);
+
+            int consumed = candidateStart + keys[candidate].length();
+            drop(consumed);
+            queued += scanned - consumed;
+
+            scanned = 0;
+            state = 0;
+            candidate = NONE;
+        }
+
+        /**
+         * Flushes what still pending at the end of input
+         */
+        final void finish() throws IOException {
+            while(scanned > 0){
+                if(candidate != NONE){
+                    match();
+                    while(queued > 0){
+                        step(at(scanned));
+                    }
+
+                } else {
+                    // no placeholder within them
+                    for(int i = 0; i < scanned; i++){
+                        write(at(i));
+                    }
+                    drop(scanned);
+                    scanned = 0;
+                    state = 0;
+                }
+            }
+            flush();
+        }
+    }
+
+    class CharScan extends Scan {
+
+        private final Writer out;
+
+        CharScan(Writer out) {
+            this.out = Objects.requireNonNull(out);
+        }
+
+        void feed(char[] chars, int offset, int length) throws IOException {
+
+            int end = offset + length;
+            int run = offset;
+
+            for(int i = offset; i < end; i++){
+                var c = chars[i];
+
+                // fast path: chars that can not start any placeholder
+                if(passThrough(c)){
+                    continue;
+                }
+
+                out.write(chars, run, i - run);
+                feed(c);
+                run = i + 1;
+            }
+
+            out.write(chars, run, end - run);
+        }
+
+        @Override
+        void write(char symbol) throws IOException {
+            out.write(symbol);
+        }
+
+        @Override
+        void value(int key) throws IOException {
+            out.write(values[key]);
+        }
+
+        @Override
+        void flush() throws IOException {
+            out.flush();
+        }
+    }
+
+    /**
+     * Scans raw bytes. Bytes out of placeholders are written exactly as
+     * they were read, no matter the encoding or the line endings.
+     */
+    class ByteScan extends Scan {
+
+        private final OutputStream out;
+        private final Supplier<Charset> charset;
+
+        // values encoded on demand
+        private final byte[][] encoded = new byte[values.length][];
+        private Charset resolved;
+
+        ByteScan(OutputStream out, Supplier<Charset> charset) {
+            this.out = Objects.requireNonNull(out);
+            this.charset = Objects.requireNonNull(charset);
+        }
+
+        void feed(byte[] bytes, int offset, int length) throws IOException {
+
+            int end = offset + length;
+            int run = offset;
+
+            for(int i = offset; i < end; i++){
+                var b = bytes[i] & 0xFF;
+
+                // fast path: bytes that can not start any placeholder
+                if(passThrough(b)){
+                    continue;
+                }
+
+                out.write(bytes, run, i - run);
+                feed((char)b);
+                run = i + 1;
+            }
+
+            out.write(bytes, run, end - run);
+        }
+
+        @Override
+        void write(char symbol) throws IOException {
+            out.write(symbol);
+        }
+
+        @Override
+        void value(int key) throws IOException {
+
+            if(null== encoded[key]){
+                var value = values[key];
+
+                if(ascii(value)){
+                    // the same bytes in any ASCII compatible encoding
+                    encoded[key] = value.getBytes(StandardCharsets.US_ASCII);
+
+                } else {
+                    if(null== resolved){
+                        resolved = Objects.requireNonNull(charset.get());
+                    }
+                    encoded[key] = value.getBytes(resolved);
+                }
+            }
+
+            out.write(encoded[key]);
+        }
+
+        @Override
+        void flush() throws IOException {
+            out.flush();
+        }
+    }
+
+    private static boolean ascii(String value) {
+        for(int i = 0; i < value.length(); i++){
+            if(value.charAt(i) >= ALPHABET){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(keys);
+    }
+}
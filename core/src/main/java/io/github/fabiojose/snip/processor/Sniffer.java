@@ -0,0 +1,286 @@
+package io.github.fabiojose.snip.processor;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.regex.Pattern;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Sniffs the raw bytes of a file, without decoding, to tell whether its
+ * content should be processed.
+ *
+ * @author fabiojose
+ */
+@Slf4j
+class Sniffer {
+
+    enum Kind {
+        /**
+         * Never decoded, copied byte-for-byte
+         */
+        BINARY,
+
+        /**
+         * Text without placeholder marker, nothing to replace
+         */
+        PLAIN,
+
+        /**
+         * Text with, at least, one placeholder marker
+         */
+        TEMPLATE,
+
+        /**
+         * Text encoded in UTF-16 or UTF-32, must be scanned as chars
+         */
+        WIDE
+    }
+
+    private static final byte MARKER = '_';
+
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * Like git does, a NUL within the first bytes means binary
+     */
+    private static final int NUL_WINDOW = 8000;
+
+    private static final List<byte[]> MAGIC_NUMBERS = List.of(
+        bytes(0x89, 'P', 'N', 'G'),                 // png
+        bytes(0xFF, 0xD8, 0xFF),                    // jpeg
+        bytes('G', 'I', 'F', '8'),                  // gif
+        bytes('%', 'P', 'D', 'F', '-'),             // pdf
+        bytes('P', 'K', 0x03, 0x04),                // zip, jar, war, docx
+        bytes('P', 'K', 0x05, 0x06),                // empty zip
+        bytes(0x1F, 0x8B),                          // gzip
+        bytes('B', 'Z', 'h'),                       // bzip2
+        bytes(0xFD, '7', 'z', 'X', 'Z'),            // xz
+        bytes('7', 'z', 0xBC, 0xAF, 0x27, 0x1C),    // 7z
+        bytes('R', 'a', 'r', '!', 0x1A, 0x07),      // rar
+        bytes(0xCA, 0xFE, 0xBA, 0xBE),              // java class
+        bytes(0x7F, 'E', 'L', 'F'),                 // elf
+        bytes('w', 'O', 'F', 'F'),                  // woff
+        bytes('w', 'O', 'F', '2'),                  // woff2
+        bytes('O', 'T', 'T', 'O'),                  // otf
+        bytes('R', 'I', 'F', 'F'),                  // webp, wav, avi
+        bytes(0x00, 0x61, 0x73, 0x6D)               // wasm
+    );
+
+    /**
+     * Text with these marks may have NUL bytes. The order matters, because
+     * the UTF-16LE mark is a prefix of the UTF-32LE one.
+     */
+    private static final Map<byte[], String> WIDE_BOMS = new LinkedHashMap<>();
+    static {
+        WIDE_BOMS.put(bytes(0x00, 0x00, 0xFE, 0xFF), "UTF-32BE");
+        WIDE_BOMS.put(bytes(0xFF, 0xFE, 0x00, 0x00), "UTF-32LE");
+        WIDE_BOMS.put(bytes(0xFE, 0xFF), "UTF-16BE");
+        WIDE_BOMS.put(bytes(0xFF, 0xFE), "UTF-16LE");
+    }
+
+    private static final byte[] UTF8_BOM = bytes(0xEF, 0xBB, 0xBF);
+
+    /**
+     * Charset declarations within the head: xml prolog, html meta,
+     * css and python/emacs comments
+     */
+    private static final Pattern DECLARED_CHARSET = Pattern.compile(
+        "(?:encoding\\s*=\\s*[\"']|charset\\s*=\\s*[\"']?|@charset\\s+[\"']|coding[:=]\\s*)"
+        + "([\\w.:\\-]+)");
+
+    private static final int DECLARATION_WINDOW = 1024;
+
+    private Sniffer() {}
+
+    private static byte[] bytes(int... values) {
+        var result = new byte[values.length];
+        for(int i = 0; i < values.length; i++){
+            result[i] = (byte)values[i];
+        }
+        return result;
+    }
+
+    private static boolean startsWith(ByteBuffer head, byte[] magic) {
+        if(head.limit() < magic.length){
+            return false;
+        }
+
+        for(int i = 0; i < magic.length; i++){
+            if(head.get(i) != magic[i]){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static boolean binary(ByteBuffer head) {
+
+        if(MAGIC_NUMBERS.stream().anyMatch(m -> startsWith(head, m))){
+            return true;
+        }
+
+        if(wide(head).isPresent()){
+            return false;
+        }
+
+        int window = Math.min(head.limit(), NUL_WINDOW);
+        for(int i = 0; i < window; i++){
+            if(head.get(i) == 0){
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    static Optional<Charset> wide(ByteBuffer head) {
+        return WIDE_BOMS.entrySet().stream()
+            .filter(bom -> startsWith(head, bom.getKey()))
+            .map(bom -> Charset.forName(bom.getValue()))
+            .findFirst();
+    }
+
+    private static ByteBuffer head(Path file, int size) throws IOException {
+
+        try(var channel = FileChannel.open(file, StandardOpenOption.READ)){
+            var buffer = ByteBuffer.allocate(size);
+            while(buffer.hasRemaining() && channel.read(buffer) != -1);
+
+            return buffer.flip();
+        }
+    }
+
+    /**
+     * @return The charset of UTF-16 or UTF-32 files, by their byte order mark
+     */
+    static Optional<Charset> wide(Path file) throws IOException {
+        return wide(head(file, 4));
+    }
+
+    /**
+     * Charset of ASCII compatible text: UTF-8 when there is byte order mark,
+     * or the one declared within the head of file, or the platform default.
+     */
+    static Charset charset(Path file) {
+
+        try{
+            return charset(head(file, DECLARATION_WINDOW));
+
+        }catch(IOException e){
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Like {@link #charset(Path)}, for content already in memory
+     */
+    static Charset charset(ByteBuffer content) {
+
+        var head = content.duplicate();
+        head.limit(Math.min(head.limit(), DECLARATION_WINDOW));
+
+        if(startsWith(head, UTF8_BOM)){
+            return StandardCharsets.UTF_8;
+        }
+
+        var text = StandardCharsets.ISO_8859_1.decode(head);
+        var matcher = DECLARED_CHARSET.matcher(text);
+        while(matcher.find()){
+            var name = matcher.group(1);
+            try{
+                if(Charset.isSupported(name)){
+                    log.debug("Declared charset {}", name);
+                    return Charset.forName(name);
+                }
+            }catch(IllegalCharsetNameException e){
+                log.debug("Illegal charset {}", name);
+            }
+        }
+
+        return Charset.defaultCharset();
+    }
+
+    /**
+     * @return {@code true} when there is a placeholder marker since the
+     * current position, or just after a marker already seen
+     */
+    private static boolean marked(ByteBuffer buffer, boolean previous) {
+        while(buffer.hasRemaining()){
+            var current = buffer.get() == MARKER;
+            if(previous && current){
+                return true;
+            }
+            previous = current;
+        }
+        return false;
+    }
+
+    /**
+     * Like {@link #sniff(Path)}, for the whole content already in memory
+     */
+    static Kind sniff(ByteBuffer content) {
+
+        var buffer = content.duplicate();
+        if(binary(buffer)){
+            return Kind.BINARY;
+        }
+
+        if(wide(buffer).isPresent()){
+            return Kind.WIDE;
+        }
+
+        return marked(buffer, false) ? Kind.TEMPLATE : Kind.PLAIN;
+    }
+
+    /**
+     * Reads the file until the first placeholder marker, at most once.
+     */
+    static Kind sniff(Path file) throws IOException {
+
+        try(var channel = FileChannel.open(file, StandardOpenOption.READ)){
+            var buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+            // the head must be complete to look for NUL bytes
+            while(buffer.hasRemaining() && channel.read(buffer) != -1);
+            buffer.flip();
+
+            if(binary(buffer)){
+                return Kind.BINARY;
+            }
+
+            if(wide(buffer).isPresent()){
+                return Kind.WIDE;
+            }
+
+            boolean previous = false;
+            while(true){
+                if(marked(buffer, previous)){
+                    return Kind.TEMPLATE;
+                }
+
+                // a marker may be split by the chunk boundary
+                previous = buffer.limit() > 0 && buffer.get(buffer.limit() - 1) == MARKER;
+
+                buffer.clear();
+                if(channel.read(buffer) == -1){
+                    break;
+                }
+                buffer.flip();
+            }
+        }
+
+        return Kind.PLAIN;
+    }
+}
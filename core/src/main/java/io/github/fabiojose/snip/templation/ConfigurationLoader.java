@@ -1,10 +1,10 @@
 package io.github.fabiojose.snip.templation;
 
 import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.util.Map;
 import java.util.Objects;
@@ -62,7 +62,7 @@ public class ConfigurationLoader {
     public static Map<String, Object> loadAsMap(Path config) {
         Objects.requireNonNull(config);
 
-        try(var reader = new FileReader(config.toFile())) {
+        try(var reader = Files.newBufferedReader(config)) {
             return getYamlLoader().load(reader);
         }catch(IOException e){
             throw new UncheckedIOException(e);
@@ -99,7 +99,8 @@ public class ConfigurationLoader {
             return Optional.of(jsonobj);
 
         }catch(UncheckedIOException e){
-            if(e.getCause() instanceof FileNotFoundException){
+            if(e.getCause() instanceof FileNotFoundException
+                || e.getCause() instanceof NoSuchFileException){
                 return Optional.empty();
             }
             throw e;
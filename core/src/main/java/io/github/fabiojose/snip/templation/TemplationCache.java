@@ -0,0 +1,301 @@
+package io.github.fabiojose.snip.templation;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Properties;
+
+import org.apache.commons.io.FileUtils;
+
+import io.github.fabiojose.snip.util.FileUtil;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import net.lingala.zip4j.ZipFile;
+
+/**
+ * Content-addressed store of fetched templations, shared by runs and
+ * processes. Each tree is extracted once, under the commit SHA or the digest
+ * of its archive, and published with a rename. After that, nothing writes to
+ * it and new projects are never linked to it, so a change made to a project
+ * does not reach the later ones.
+ * <p>
+ * The reference of each templation location to its last tree is kept
+ * apart, so the trees stay immutable. It has the validators of the last
+ * response, {@code ETag} and {@code Last-Modified}, to revalidate it, and
+ * is named by the digest of the location, which it keeps too.
+ * <p>
+ * Trees no longer referenced are evicted when a reference moves to another
+ * tree, once unused for a grace period, so runs still reading them are not
+ * disturbed.
+ *
+ * @author fabiojose
+ */
+@Slf4j
+public class TemplationCache {
+
+    static final String COMMIT_PREFIX = "commit-";
+    static final String DIGEST_PREFIX = "sha256-";
+
+    private static final String TREES_DIR = "trees";
+    private static final String REFS_DIR = "refs";
+    private static final String TMP_DIR = "tmp";
+
+    private static final String REF_SUFFIX = ".properties";
+    private static final Duration EVICTION_GRACE = Duration.ofDays(1);
+
+    static final String KEY = "key";
+    static final String ETAG = "etag";
+    static final String LAST_MODIFIED = "last-modified";
+    static final String CHECKED = "checked";
+    static final String LOCATION = "location";
+
+    @Getter
+    private final Path directory;
+
+    /**
+     * How long after a check the cached tree is served at once, while it is
+     * revalidated in background
+     */
+    @Getter
+    private final Duration staleWhileRevalidate;
+
+    private TemplationCache(Path directory, Duration staleWhileRevalidate) {
+        this.directory = Objects.requireNonNull(directory);
+        this.staleWhileRevalidate = Objects.requireNonNull(staleWhileRevalidate);
+    }
+
+    /**
+     * @return The default cache directory, within the user home
+     */
+    public static Path home() {
+        return Path.of(System.getProperty("user.home"), ".snip", "cache");
+    }
+
+    public static TemplationCache create(Path directory) {
+        return create(directory, Duration.ZERO);
+    }
+
+    public static TemplationCache create(Path directory, Duration staleWhileRevalidate) {
+        return new TemplationCache(directory, staleWhileRevalidate);
+    }
+
+    /**
+     * @return {@code true} when the reference was checked within the
+     * stale-while-revalidate window
+     */
+    public boolean withinStaleWindow(Properties reference) {
+
+        var checked = reference.getProperty(CHECKED);
+        if(null== checked || staleWhileRevalidate.isZero()){
+            return false;
+        }
+
+        var elapsed = System.currentTimeMillis() - Long.parseLong(checked);
+        return elapsed >= 0 && elapsed <= staleWhileRevalidate.toMillis();
+    }
+
+    /**
+     * @return {@code true} when the path is within a stored tree
+     */
+    public boolean contains(Path path) {
+        return path.toAbsolutePath().normalize()
+            .startsWith(directory.resolve(TREES_DIR).toAbsolutePath().normalize());
+    }
+
+    /**
+     * @return The tree stored with the key, if any
+     */
+    public Optional<Path> tree(String key) {
+
+        var result = directory.resolve(TREES_DIR).resolve(key);
+        if(Files.isDirectory(result)){
+            log.debug("Templation found in cache {}", result);
+
+            // marks the use, holding back its eviction
+            try{
+                Files.setLastModifiedTime(result, FileTime.fromMillis(System.currentTimeMillis()));
+            }catch(IOException e){
+                log.debug("Templation use not marked {}", result, e);
+            }
+            return Optional.of(result);
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Extracts the archive aside and publishes its root folder under the
+     * key. When another process publishes the same key first, its tree is
+     * used and this extraction is deleted.
+     *
+     * @return The stored tree
+     */
+    public Path store(String key, Path archive) throws IOException {
+
+        var trees = Files.createDirectories(directory.resolve(TREES_DIR));
+        var target = trees.resolve(key);
+
+        var extraction = Files.createTempDirectory(
+            Files.createDirectories(directory.resolve(TMP_DIR)), key);
+
+        try{
+            var zip = new ZipFile(archive.toFile());
+            zip.extractAll(extraction.toString());
+
+            // github zipballs have a single root folder, not always listed first
+            var first = zip.getFileHeaders().iterator().next().getFileName();
+            var slash = first.indexOf('/');
+            var root = slash < 0 ? extraction : extraction.resolve(first.substring(0, slash));
+
+            try{
+                Files.move(root, target, StandardCopyOption.ATOMIC_MOVE);
+                log.debug("Templation stored in cache {}", target);
+
+            }catch(FileAlreadyExistsException | DirectoryNotEmptyException e){
+                log.debug("Templation stored by another process {}", target);
+            }
+
+        }finally{
+            FileUtils.deleteDirectory(extraction.toFile());
+        }
+
+        return target;
+    }
+
+    /**
+     * @return The last tree fetched from the location, if still cached
+     */
+    public Optional<Path> last(String location) {
+        return reference(location)
+            .map(r -> r.getProperty(KEY))
+            .flatMap(this::tree);
+    }
+
+    private Path ref(String location) {
+        return directory.resolve(REFS_DIR)
+            .resolve(FileUtil.digest(location) + REF_SUFFIX);
+    }
+
+    /**
+     * @return What is known about the last tree fetched from the location
+     */
+    public Optional<Properties> reference(String location) {
+
+        var file = ref(location);
+        if(!Files.exists(file)){
+            return Optional.empty();
+        }
+
+        try(var in = Files.newInputStream(file)){
+            var result = new Properties();
+            result.load(in);
+
+            if(!location.equals(result.getProperty(LOCATION))){
+                log.debug("Templation reference of another location {}", file);
+                return Optional.empty();
+            }
+            return Optional.of(result);
+
+        }catch(IOException e){
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Records the last tree fetched from the location, replacing the
+     * previous record atomically
+     */
+    public void reference(String location, Properties reference) throws IOException {
+
+        var file = ref(location);
+        Files.createDirectories(file.getParent());
+
+        var previous = reference(location)
+            .map(r -> r.getProperty(KEY))
+            .orElse(null);
+
+        reference.setProperty(LOCATION, location);
+        FileUtil.writeAtomically(file, out -> reference.store(out, location));
+        log.debug("Templation reference recorded {}", file);
+
+        if(null!= previous && !previous.equals(reference.getProperty(KEY))){
+            evict();
+        }
+    }
+
+    /**
+     * Deletes the trees not referenced by any location and the leftovers of
+     * extractions, both when unused for the grace period. Each tree is
+     * moved aside before deletion, so it never appears half deleted.
+     */
+    public void evict() throws IOException {
+
+        var trees = directory.resolve(TREES_DIR);
+        var tmp = directory.resolve(TMP_DIR);
+        var refs = directory.resolve(REFS_DIR);
+        if(!Files.isDirectory(trees)){
+            return;
+        }
+
+        var referenced = new HashSet<String>();
+        if(Files.isDirectory(refs)){
+            try(var files = Files.list(refs)){
+                for(var file : (Iterable<Path>)files::iterator){
+                    if(!file.getFileName().toString().endsWith(REF_SUFFIX)){
+                        // being written
+                        continue;
+                    }
+                    try(var in = Files.newInputStream(file)){
+                        var reference = new Properties();
+                        reference.load(in);
+                        Optional.ofNullable(reference.getProperty(KEY))
+                            .ifPresent(referenced::add);
+                    }
+                }
+            }
+        }
+
+        var unused = FileTime.fromMillis(
+            System.currentTimeMillis() - EVICTION_GRACE.toMillis());
+
+        if(Files.isDirectory(tmp)){
+            try(var leftovers = Files.list(tmp)){
+                for(var leftover : (Iterable<Path>)leftovers::iterator){
+                    if(Files.getLastModifiedTime(leftover).compareTo(unused) < 0){
+                        FileUtils.deleteQuietly(leftover.toFile());
+                    }
+                }
+            }
+        }
+
+        try(var all = Files.list(trees)){
+            for(var tree : (Iterable<Path>)all::iterator){
+                var key = tree.getFileName().toString();
+                if(referenced.contains(key)
+                    || Files.getLastModifiedTime(tree).compareTo(unused) >= 0){
+                    continue;
+                }
+
+                var evicted = Files.createTempDirectory(
+                    Files.createDirectories(tmp), key).resolve(key);
+                try{
+                    Files.move(tree, evicted, StandardCopyOption.ATOMIC_MOVE);
+                    log.debug("Templation evicted from cache {}", tree);
+
+                }catch(IOException e){
+                    log.debug("Templation not evicted from cache {}", tree, e);
+                }finally{
+                    FileUtils.deleteQuietly(evicted.getParent().toFile());
+                }
+            }
+        }
+    }
+}
@@ -1,17 +1,39 @@
 package io.github.fabiojose.snip.templation;
 
+import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
 import java.net.HttpURLConnection;
 import java.net.URI;
 import java.net.URL;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.FileSystem;
 import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.regex.Pattern;
 
 import org.apache.commons.io.FileUtils;
 
+import io.github.fabiojose.snip.util.FileUtil;
 import lombok.extern.slf4j.Slf4j;
 import net.lingala.zip4j.ZipFile;
 
@@ -19,7 +41,7 @@ import net.lingala.zip4j.ZipFile;
  * @author fabiojose
  */
 @Slf4j
-public class TemplationFetcher {
+public class TemplationFetcher implements Closeable {
 
     public static final String TMP_DIR = System.getProperty("java.io.tmpdir");
     public static final String SNIP_TMP_DIR = TMP_DIR + FileSystems.getDefault().getSeparator()  + "snip";
@@ -29,31 +51,424 @@ public class TemplationFetcher {
 
     private static final Pattern REMOTE_TEMPLATE = Pattern.compile("^https?:/.+$");
 
+    /**
+     * Supported by the zip file system since Java 14
+     */
+    private static final String POSIX_ARCHIVE = "enablePosixFileAttributes";
+
+    /**
+     * For the entries without them, the same the extraction gives
+     */
+    private static final String POSIX_DEFAULTS = "defaultPermissions";
+    private static final String DEFAULT_PERMISSIONS = "rw-------";
+    private static final String ARCHIVE_ROOT = "/";
+
+    /**
+     * Within the location of new project, when the temporary directory is
+     * in another file system
+     */
+    public static final String STAGING_DIR = ".snip";
+    private static final String SCRATCH_PREFIX = "snip-";
+
+    /**
+     * To get just the commit SHA from the github API
+     */
+    static final String GITHUB_API_PROPERTY = "snip.github.api.baseurl";
+
+    private static final String GITHUB_SHA = "application/vnd.github.sha";
+    private static final Pattern COMMIT_SHA = Pattern.compile("^[0-9a-f]{40}$");
+
+    private static final String ETAG = "ETag";
+    private static final String LAST_MODIFIED = "Last-Modified";
+    private static final String IF_NONE_MATCH = "If-None-Match";
+    private static final String IF_MODIFIED_SINCE = "If-Modified-Since";
+
+    private static final Executor REFRESHER = Executors.newSingleThreadExecutor(r -> {
+        var thread = new Thread(r, "snip-refresher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * The background revalidations still running, waited at most this long
+     * when the JVM shuts down
+     */
+    private static final Set<CompletableFuture<Void>> REFRESHING = ConcurrentHashMap.newKeySet();
+    private static final Duration REFRESH_TIMEOUT = Duration.ofSeconds(10);
+    private static final AtomicBoolean REFRESH_HOOK = new AtomicBoolean();
+
     private URI templation;
     private Path localhost;
     private URL remote;
+    private Path staging;
+    private TemplationCache cache;
+
+    /**
+     * The cached tree, when offline
+     */
+    private Path offline;
+
+    private FileSystem archive;
+    private Path scratch;
+    private CompletableFuture<Void> refreshing;
 
     private TemplationFetcher() {}
 
-    String getGithubAPIBaseURL() {
-        return System.getProperty("snip.github.api.baseurl", "https://api.github.com/");
+    static String getGithubAPIBaseURL() {
+        return System.getProperty(GITHUB_API_PROPERTY, "https://api.github.com/");
+    }
+
+    /**
+     * @param destination Where the new project will be created
+     * @return The temporary directory, when in the same file system of
+     * destination, or a hidden one within the destination. So the staged
+     * files are renamed, never copied across devices.
+     */
+    public static Path staging(Path destination) {
+
+        var tmp = Path.of(SNIP_TMP_DIR);
+        if(FileUtil.sameFileStore(tmp, destination)){
+            return tmp;
+        }
+
+        var result = destination.resolve(STAGING_DIR);
+        log.debug("Temporary directory in another file system, staging at {}", result);
+
+        return result;
+    }
+
+    /**
+     * Opens the archive as a read-only file system, when it keeps the POSIX
+     * permissions of the entries, so the templation is rendered straight
+     * from it. Otherwise the archive must be extracted.
+     */
+    private Optional<Path> open(Path archive) throws IOException {
+
+        var fs = FileSystems.newFileSystem(URI.create("jar:" + archive.toUri()),
+            Map.of(POSIX_ARCHIVE, "true", POSIX_DEFAULTS, DEFAULT_PERMISSIONS));
+
+        if(null== Files.getFileAttributeView(fs.getPath(ARCHIVE_ROOT),
+                PosixFileAttributeView.class)){
+
+            log.debug("Archive without POSIX permissions, it will be extracted {}", archive);
+            fs.close();
+            return Optional.empty();
+        }
+
+        this.archive = fs;
+
+        // github zipballs have a single root folder
+        try(var roots = Files.list(fs.getPath(ARCHIVE_ROOT))){
+            return roots.filter(Files::isDirectory).findFirst();
+        }
+    }
+
+    private boolean github() {
+        return !REMOTE_TEMPLATE.matcher(templation.toString()).matches();
+    }
+
+    /**
+     * Opens a GET request with the validators of the previous reference,
+     * if any, so an unchanged resource costs just a 304
+     */
+    private static HttpURLConnection conditional(URL url, Properties previous)
+        throws IOException {
+
+        var result = (HttpURLConnection)url.openConnection();
+
+        Optional.ofNullable(previous.getProperty(TemplationCache.ETAG))
+            .ifPresent(etag -> result.setRequestProperty(IF_NONE_MATCH, etag));
+        Optional.ofNullable(previous.getProperty(TemplationCache.LAST_MODIFIED))
+            .ifPresent(date -> result.setRequestProperty(IF_MODIFIED_SINCE, date));
+
+        return result;
+    }
+
+    /**
+     * Keeps the validators of the response, to revalidate the next time
+     */
+    private static Properties validated(HttpURLConnection response, String key) {
+
+        var result = new Properties();
+        result.setProperty(TemplationCache.KEY, key);
+
+        Optional.ofNullable(response.getHeaderField(ETAG))
+            .ifPresent(etag -> result.setProperty(TemplationCache.ETAG, etag));
+        Optional.ofNullable(response.getHeaderField(LAST_MODIFIED))
+            .ifPresent(date -> result.setProperty(TemplationCache.LAST_MODIFIED, date));
+
+        return result;
     }
 
+    /**
+     * @return The previous reference, when its tree has the same kind of key,
+     * otherwise its validators do not apply
+     */
+    private static Properties validating(Optional<Properties> previous, String prefix) {
+        return previous
+            .filter(r -> r.getProperty(TemplationCache.KEY).startsWith(prefix))
+            .orElseGet(Properties::new);
+    }
+
+    /**
+     * @return The status of the response
+     * @throws TemplationNotFoundException When the templation is not there
+     */
+    private int status(HttpURLConnection response) throws IOException {
+
+        var result = response.getResponseCode();
+        if(HttpURLConnection.HTTP_NOT_FOUND == result){
+            throw new TemplationNotFoundException(templation.toString());
+        }
+        return result;
+    }
+
+    /**
+     * @return The reference to the commit of the default branch, when the
+     * templation is from github and the API answers
+     */
+    private Optional<Properties> commit(Optional<Properties> previous) {
+
+        if(!github()){
+            return Optional.empty();
+        }
+
+        var validating = validating(previous, TemplationCache.COMMIT_PREFIX);
+
+        HttpURLConnection https = null;
+        try{
+            var url = new URL(getGithubAPIBaseURL() + "repos/" + templation + "/commits/HEAD");
+            https = conditional(url, validating);
+            https.setRequestProperty("Accept", GITHUB_SHA);
+
+            var status = status(https);
+            if(HttpURLConnection.HTTP_NOT_MODIFIED == status){
+                log.debug("templation {} not modified", templation);
+                return Optional.of(validating);
+            }
+
+            if(HttpURLConnection.HTTP_OK == status){
+                try(var in = https.getInputStream()){
+                    var sha = new String(in.readAllBytes(), StandardCharsets.US_ASCII).trim();
+                    if(COMMIT_SHA.matcher(sha).matches()){
+                        log.debug("templation {} at commit {}", templation, sha);
+                        return Optional.of(validated(https, TemplationCache.COMMIT_PREFIX + sha));
+                    }
+                }
+            }
+            log.debug("Commit not resolved {}, status {}", url, status);
+
+        }catch(IOException e){
+            log.debug("Commit not resolved {}", templation, e);
+
+        }finally{
+            if(null!= https){
+                https.disconnect();
+            }
+        }
+
+        return Optional.empty();
+    }
+
+    private Path download(URLConnection connection) throws IOException {
+        log.debug("downloading the remote templation {}", connection.getURL());
+
+        final var normalizedName = templation.toString().replaceAll("/", "-").replaceAll(":", "-");
+
+        // one scratch per run, processes may share the staging
+        if(null== scratch){
+            scratch = Files.createTempDirectory(Files.createDirectories(staging),
+                SCRATCH_PREFIX);
+        }
+
+        var result = scratch.resolve(normalizedName + ".zip");
+        try(var in = connection.getInputStream()){
+            Files.copy(in, result, StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        return result;
+    }
+
+    /**
+     * Resolves the current tree of templation, storing it when absent: by the
+     * commit SHA, whose zipball is downloaded just once. Or by the archive
+     * digest, when there is no commit to resolve, saving the extraction.
+     *
+     * @param previous The last reference, whose tree is cached
+     * @return The current reference
+     */
+    private Properties revalidate(Optional<Properties> previous) throws IOException {
+
+        var commit = commit(previous);
+        if(commit.isPresent()){
+            var key = commit.get().getProperty(TemplationCache.KEY);
+
+            if(cache.tree(key).isEmpty()){
+                // the zipball of exactly that commit
+                var sha = key.substring(TemplationCache.COMMIT_PREFIX.length());
+                var zipball = (HttpURLConnection)new URL(this.remote + "/" + sha).openConnection();
+                try{
+                    var status = status(zipball);
+                    if(HttpURLConnection.HTTP_OK != status){
+                        throw new IOException("Status " + status + " downloading " + zipball.getURL());
+                    }
+                    cache.store(key, download(zipball));
+
+                }finally{
+                    zipball.disconnect();
+                }
+            }
+            return commit.get();
+        }
+
+        var validating = validating(previous, TemplationCache.DIGEST_PREFIX);
+        var http = conditional(this.remote, validating);
+        try{
+            var status = status(http);
+            if(HttpURLConnection.HTTP_NOT_MODIFIED == status){
+                log.debug("templation {} not modified", templation);
+                return validating;
+            }
+            if(HttpURLConnection.HTTP_OK != status){
+                throw new IOException("Status " + status + " downloading " + this.remote);
+            }
+
+            var archive = download(http);
+            var key = TemplationCache.DIGEST_PREFIX + FileUtil.digest(archive);
+
+            if(cache.tree(key).isEmpty()){
+                cache.store(key, archive);
+            }
+            return validated(http, key);
+
+        }finally{
+            http.disconnect();
+        }
+    }
+
+    private Properties refresh(Optional<Properties> previous) throws IOException {
+
+        var result = revalidate(previous);
+        result.setProperty(TemplationCache.CHECKED,
+            String.valueOf(System.currentTimeMillis()));
+
+        cache.reference(templation.toString(), result);
+        return result;
+    }
+
+    /**
+     * The cached tree of templation, after revalidation. Within the
+     * stale-while-revalidate window, it is served at once and revalidated
+     * in background, while the scaffolding goes on.
+     */
+    private Path cached() throws IOException {
+
+        var previous = cache.reference(templation.toString())
+            .filter(r -> null!= r.getProperty(TemplationCache.KEY))
+            .filter(r -> cache.tree(r.getProperty(TemplationCache.KEY)).isPresent());
+
+        if(previous.isPresent() && cache.withinStaleWindow(previous.get())){
+            var tree = cache.tree(previous.get().getProperty(TemplationCache.KEY)).orElseThrow();
+            log.debug("templation served from cache, revalidating in background {}", tree);
+
+            refreshing = background(previous);
+            return tree;
+        }
+
+        var reference = refresh(previous);
+        var tree = cache.tree(reference.getProperty(TemplationCache.KEY)).orElseThrow();
+
+        log.debug("templation will be read from cache at {}", tree);
+        return tree;
+    }
+
+    /**
+     * Revalidates with a fetcher of its own, that deletes its own downloads,
+     * so the scaffolding never waits for it
+     */
+    private CompletableFuture<Void> background(Optional<Properties> previous) {
+
+        var refresher = new TemplationFetcher();
+        refresher.templation = templation;
+        refresher.remote = remote;
+        refresher.staging = staging;
+        refresher.cache = cache;
+
+        var result = CompletableFuture.runAsync(() -> {
+            try(refresher){
+                refresher.refresh(previous);
+            }catch(IOException | RuntimeException e){
+                log.warn("Templation not revalidated {}: {}", templation, e.getMessage());
+            }
+        }, REFRESHER);
+
+        REFRESHING.add(result);
+        result.whenComplete((r, e) -> REFRESHING.remove(result));
+
+        if(REFRESH_HOOK.compareAndSet(false, true)){
+            Runtime.getRuntime().addShutdownHook(
+                new Thread(TemplationFetcher::awaitRefreshing, "snip-refresher-shutdown"));
+        }
+
+        return result;
+    }
+
+    /**
+     * Gives the background revalidations a bounded time to finish, when the
+     * JVM shuts down. Those not finished are revalidated again next time.
+     */
+    private static void awaitRefreshing() {
+        try{
+            CompletableFuture.allOf(REFRESHING.toArray(new CompletableFuture<?>[0]))
+                .get(REFRESH_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+
+        }catch(TimeoutException e){
+            log.debug("Templation revalidation abandoned after {}", REFRESH_TIMEOUT);
+        }catch(ExecutionException e){
+            log.debug("Templation revalidation failed", e);
+        }catch(InterruptedException e){
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return The background revalidation started by fetch, if any
+     */
+    Optional<CompletableFuture<Void>> refreshing() {
+        return Optional.ofNullable(refreshing);
+    }
+
+    /**
+     * @return The templation root, that may be the local templation itself,
+     * within the cache or within the downloaded archive. It must be treated
+     * as read-only.
+     */
     public Path fetch() throws IOException {
 
         Path target = null;
 
-        if(null!= this.remote){
-            log.debug("downloading the remote templation {}", this.remote);
+        if(null!= this.offline){
+            target = this.offline;
+            log.debug("templation will be read from cache, offline, at {}", target);
 
+        } else if(null!= this.remote && null!= this.cache){
+            target = cached();
+
+        } else if(null!= this.remote){
             final var normalizedName = templation.toString().replaceAll("/", "-").replaceAll(":", "-");
-            target = Path.of(SNIP_TMP_DIR, normalizedName);
-            FileUtils.deleteQuietly(target.toFile());
-            Files.createDirectories(target);
 
-            var targetFile = Path.of(TMP_DIR, normalizedName + ".zip");
+            var targetFile = download(this.remote.openConnection());
+
+            var root = open(targetFile);
+            if(root.isPresent()){
+                target = root.get();
+                log.debug("templation will be read from archive {} at {}", targetFile, target);
+
+                return target;
+            }
+
+            target = Files.createDirectories(scratch.resolve(normalizedName));
 
-            FileUtils.copyURLToFile(this.remote, targetFile.toFile());
             var zip = new ZipFile(targetFile.toFile());
             zip.extractAll(target.toString());
 
@@ -64,17 +479,73 @@ public class TemplationFetcher {
 
         } else {
 
-            target = Path.of(SNIP_TMP_DIR, this.localhost.toFile().getName());
-            Files.createDirectories(target);
-
-            FileUtils.copyDirectory(this.localhost.toFile(), target.toFile(), false);
-            log.debug("templation copied to {}", target);
+            // read-through, the scaffolding never writes to the templation
+            target = this.localhost;
+            log.debug("templation will be read in place at {}", target);
         }
 
         return target;
     }
 
+    /**
+     * Closes the archive opened to read the templation and deletes the
+     * downloaded files, if any. The background revalidation, if any, goes on
+     * by itself.
+     */
+    @Override
+    public void close() throws IOException {
+        if(null!= archive){
+            archive.close();
+            archive = null;
+        }
+        if(null!= scratch){
+            FileUtils.deleteDirectory(scratch.toFile());
+            scratch = null;
+
+            // do not leave the hidden one behind, unless in use by others
+            if(STAGING_DIR.equals(staging.getFileName().toString())){
+                try{
+                    Files.deleteIfExists(staging);
+                }catch(DirectoryNotEmptyException e){
+                    log.debug("Staging in use {}", staging);
+                }
+            }
+        }
+    }
+
     public static TemplationFetcher create(URI templation) throws IOException {
+        return create(templation, Path.of(SNIP_TMP_DIR));
+    }
+
+    /**
+     * @param staging Where remote templations are downloaded and extracted
+     */
+    public static TemplationFetcher create(URI templation, Path staging)
+        throws IOException {
+        return create(templation, staging, null);
+    }
+
+    /**
+     * @param staging Where remote templations are downloaded and extracted
+     * @param cache Where remote templations are kept across runs, or
+     * {@code null} to download them on every run
+     */
+    public static TemplationFetcher create(URI templation, Path staging,
+        TemplationCache cache) throws IOException {
+        return create(templation, staging, cache, false);
+    }
+
+    /**
+     * @param staging Where remote templations are downloaded and extracted
+     * @param cache Where remote templations are kept across runs, or
+     * {@code null} to download them on every run
+     * @param offline {@code true} to resolve remote templations just from
+     * the cache, without any network call
+     * @throws TemplationNotFoundException When offline and the templation is
+     * not cached
+     */
+    public static TemplationFetcher create(URI templation, Path staging,
+        TemplationCache cache, boolean offline) throws IOException {
 
         Path localTemplate = null;
         URL remoteTemplate = null;
@@ -91,12 +562,21 @@ public class TemplationFetcher {
             remoteTemplate = templation.toURL();
             log.debug("templation from custom URL: {}", remoteTemplate);
         } else {
-            remoteTemplate = new URL("https://api.github.com/repos/" + templation + "/zipball");
+            remoteTemplate = new URL(getGithubAPIBaseURL() + "repos/" + templation + "/zipball");
             log.debug("templation from github: {}", remoteTemplate);
         }
 
-        if(null!= remoteTemplate) {
+        Path cached = null;
+        if(null!= remoteTemplate && offline) {
+
+            cached = Optional.ofNullable(cache)
+                .flatMap(c -> c.last(templation.toString()))
+                .orElseThrow(() -> new TemplationNotFoundException(
+                    "Templation not cached, it can not be fetched offline: " + templation));
+
+        } else if(null!= remoteTemplate && null== cache) {
 
+            // cached ones are found, or not, by the freshness check
             var https = (HttpURLConnection)remoteTemplate.openConnection();
             https.setRequestMethod("HEAD");
 
@@ -110,6 +590,9 @@ public class TemplationFetcher {
         fetcher.templation = templation;
         fetcher.localhost = localTemplate;
         fetcher.remote = remoteTemplate;
+        fetcher.staging = Objects.requireNonNull(staging);
+        fetcher.cache = cache;
+        fetcher.offline = cached;
 
         return fetcher;
     }
@@ -0,0 +1,393 @@
+package io.github.fabiojose.snip.util;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributeView;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+import org.apache.commons.io.FileUtils;
+
+import lombok.experimental.UtilityClass;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * @author fabiojose
+ */
+@UtilityClass
+@Slf4j
+public class FileUtil {
+
+    private static final String TEMP_SUFFIX = ".snip-tmp";
+
+    private static final String DIGEST = "SHA-256";
+    private static final int BUFFER_SIZE = 8192;
+
+    private static final Executor SWEEPER = Executors.newSingleThreadExecutor(r -> {
+        var thread = new Thread(r, "snip-sweeper");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * The sweeps still running, waited at most this long when the JVM shuts
+     * down, so a failed project is not left behind in the trash
+     */
+    private static final Set<CompletableFuture<Void>> SWEEPING = ConcurrentHashMap.newKeySet();
+    private static final Duration SWEEP_TIMEOUT = Duration.ofSeconds(10);
+    private static final AtomicBoolean SWEEP_HOOK = new AtomicBoolean();
+
+    @FunctionalInterface
+    public interface Writing {
+        void write(OutputStream out) throws IOException;
+    }
+
+    /**
+     * @return A not existing path, in the same directory of target
+     */
+    public static Path sibling(Path target) {
+        return target.resolveSibling("." + target.getFileName() + "."
+            + UUID.randomUUID() + TEMP_SUFFIX);
+    }
+
+    /**
+     * Writes to a temporary sibling of target, then renames it over the
+     * target. Readers never see a partially written file and, because the
+     * sibling is in the same directory, the rename is just metadata.
+     * <p>
+     * When target already exists, its POSIX permissions are kept.
+     */
+    public static void writeAtomically(Path target, Writing writing) throws IOException {
+
+        var temp = sibling(target);
+        try{
+            try(var out = new BufferedOutputStream(Files.newOutputStream(temp))){
+                writing.write(out);
+            }
+
+            copyPermissions(target, temp);
+            move(temp, target);
+
+        }catch(IOException | RuntimeException e){
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+    }
+
+    /**
+     * Moves source over target, atomically when the file system supports.
+     */
+    public static void move(Path source, Path target) throws IOException {
+        try{
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+        }catch(AtomicMoveNotSupportedException e){
+            log.debug("Atomic move not supported from {} to {}", source, target);
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Copies the POSIX permissions, if any, of an existing file
+     */
+    public static void copyPermissions(Path from, Path to) throws IOException {
+
+        if(Files.exists(from)){
+            var posix = Files.getFileAttributeView(from, PosixFileAttributeView.class);
+            if(null!= posix){
+                Files.setPosixFilePermissions(to,
+                    posix.readAttributes().permissions());
+            }
+        }
+    }
+
+    /**
+     * @return {@code true} when the POSIX permissions, if any, let nobody
+     * write to the file. Without POSIX, when the file is not writable.
+     */
+    public static boolean readOnly(Path file) throws IOException {
+
+        var posix = Files.getFileAttributeView(file, PosixFileAttributeView.class);
+        if(null== posix){
+            return !Files.isWritable(file);
+        }
+
+        var permissions = posix.readAttributes().permissions();
+        return !permissions.contains(PosixFilePermission.OWNER_WRITE)
+            && !permissions.contains(PosixFilePermission.GROUP_WRITE)
+            && !permissions.contains(PosixFilePermission.OTHERS_WRITE);
+    }
+
+    /**
+     * Copies the bytes within the kernel, with {@link FileChannel#transferTo},
+     * creating the target with the POSIX permissions of source and keeping
+     * its times. Without POSIX, it is a regular copy with attributes.
+     * An existing target is replaced.
+     */
+    public static void transfer(Path source, Path target) throws IOException {
+
+        var posix = Files.getFileAttributeView(source, PosixFileAttributeView.class);
+        if(null== posix){
+            Files.copy(source, target, StandardCopyOption.COPY_ATTRIBUTES,
+                StandardCopyOption.REPLACE_EXISTING);
+            return;
+        }
+
+        var attributes = posix.readAttributes();
+        var permissions = attributes.permissions();
+
+        Files.deleteIfExists(target);
+        try(var in = FileChannel.open(source, StandardOpenOption.READ);
+            var out = FileChannel.open(target, Set.of(StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.WRITE), PosixFilePermissions.asFileAttribute(permissions))){
+
+            var size = in.size();
+            var position = 0L;
+            while(position < size){
+                var transferred = in.transferTo(position, size - position, out);
+                if(transferred <= 0){
+                    break;
+                }
+                position += transferred;
+            }
+        }
+
+        // the umask applies on creation
+        Files.setPosixFilePermissions(target, permissions);
+        Files.getFileAttributeView(target, BasicFileAttributeView.class)
+            .setTimes(attributes.lastModifiedTime(), attributes.lastAccessTime(), null);
+    }
+
+    /**
+     * @return SHA-256 of the file content, in hexadecimal
+     */
+    public static String digest(Path file) throws IOException {
+
+        try(var in = Files.newInputStream(file)){
+            var digest = MessageDigest.getInstance(DIGEST);
+            var buffer = new byte[BUFFER_SIZE];
+
+            for(int read; (read = in.read(buffer)) > 0;){
+                digest.update(buffer, 0, read);
+            }
+            return hex(digest.digest());
+
+        }catch(NoSuchAlgorithmException e){
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @return SHA-256 of the text in UTF-8, in hexadecimal
+     */
+    public static String digest(String text) {
+
+        try{
+            return hex(MessageDigest.getInstance(DIGEST)
+                .digest(text.getBytes(StandardCharsets.UTF_8)));
+
+        }catch(NoSuchAlgorithmException e){
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String hex(byte[] bytes) {
+
+        var result = new StringBuilder(bytes.length * 2);
+        for(var b : bytes){
+            result.append(String.format("%02x", b));
+        }
+        return result.toString();
+    }
+
+    /**
+     * @return The path itself or its nearest ancestor that exists
+     */
+    public static Path existing(Path path) {
+
+        var result = path.toAbsolutePath().normalize();
+        while(!Files.exists(result) && null!= result.getParent()){
+            result = result.getParent();
+        }
+        return result;
+    }
+
+    /**
+     * @return {@code true} when both are, or would be, in the same file
+     * store, so moving from one to other is just a rename
+     */
+    public static boolean sameFileStore(Path one, Path other) {
+        try{
+            return Files.getFileStore(existing(one))
+                .equals(Files.getFileStore(existing(other)));
+
+        }catch(IOException e){
+            log.debug("Can not tell the file store of {} and {}", one, other, e);
+            return false;
+        }
+    }
+
+    /**
+     * Publishes a directory written elsewhere at its final path. When the
+     * final path is absent or empty, it is a single rename, so observers
+     * see nothing or everything. Otherwise the entries are moved into the
+     * existing one, replacing those with same name.
+     *
+     * @return {@code true} when published by rename
+     */
+    public static boolean publish(Path staged, Path target) throws IOException {
+
+        if(Files.isDirectory(target)){
+            try(var entries = Files.list(target)){
+                if(entries.findAny().isPresent()){
+                    log.debug("Existing {}, merging {} into it", target, staged);
+                    merge(staged, target);
+                    return false;
+                }
+            }
+        }
+
+        move(staged, target);
+        log.debug("Published {} as {}", staged, target);
+
+        return true;
+    }
+
+    private static void merge(Path source, Path target) throws IOException {
+
+        try(var entries = Files.list(source)){
+            for(var entry : entries.collect(Collectors.toList())){
+                var destination = target.resolve(entry.getFileName().toString());
+
+                if(Files.isDirectory(entry, LinkOption.NOFOLLOW_LINKS)
+                    && Files.isDirectory(destination, LinkOption.NOFOLLOW_LINKS)){
+                    merge(entry, destination);
+                } else {
+                    if(Files.isDirectory(destination, LinkOption.NOFOLLOW_LINKS)){
+                        FileUtils.deleteDirectory(destination.toFile());
+                    }
+                    Files.move(entry, destination, StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+        }
+
+        Files.delete(source);
+    }
+
+    /**
+     * Takes the directory out of sight with a rename into trash, then
+     * deletes it in background. When the rename is not possible, it is
+     * deleted right away.
+     *
+     * @return Completes when deleted
+     */
+    public static CompletableFuture<Void> discard(Path directory, Path trash) {
+
+        try{
+            Files.createDirectories(trash);
+            var trashed = trash.resolve(UUID.randomUUID().toString());
+            Files.move(directory, trashed, StandardCopyOption.ATOMIC_MOVE);
+            log.debug("Discarded {} to {}", directory, trashed);
+
+            return sweep(trash);
+
+        }catch(IOException e){
+            log.debug("Can not move {} to trash, deleting it now", directory, e);
+            try{
+                FileUtils.deleteDirectory(directory.toFile());
+            }catch(IOException ex){
+                log.error("can not delete " + directory, ex);
+            }
+            return CompletableFuture.completedFuture(null);
+        }
+    }
+
+    /**
+     * Deletes in background everything within trash, including leftovers
+     * of previous runs, and then the trash. Its parent goes too when it is
+     * a hidden staging with nothing else.
+     *
+     * @return Completes when deleted
+     */
+    public static CompletableFuture<Void> sweep(Path trash) {
+
+        if(!Files.isDirectory(trash)){
+            return CompletableFuture.completedFuture(null);
+        }
+
+        var result = CompletableFuture.runAsync(() -> {
+            try(var entries = Files.list(trash)){
+                for(var entry : entries.collect(Collectors.toList())){
+                    FileUtils.deleteQuietly(entry.toFile());
+                }
+            }catch(IOException e){
+                log.debug("Can not sweep the trash {}", trash, e);
+            }
+
+            try{
+                Files.deleteIfExists(trash);
+
+                var staging = trash.getParent();
+                if(null!= staging && staging.getFileName().toString().startsWith(".")){
+                    Files.deleteIfExists(staging);
+                }
+            }catch(DirectoryNotEmptyException e){
+                log.debug("Staging in use {}", e.getFile());
+            }catch(IOException e){
+                log.debug("Trash kept {}", trash, e);
+            }
+        }, SWEEPER);
+
+        SWEEPING.add(result);
+        result.whenComplete((r, e) -> SWEEPING.remove(result));
+
+        if(SWEEP_HOOK.compareAndSet(false, true)){
+            Runtime.getRuntime().addShutdownHook(new Thread(
+                () -> awaitSweeping(SWEEP_TIMEOUT), "snip-sweeper-shutdown"));
+        }
+
+        return result;
+    }
+
+    /**
+     * Waits for the sweeps still running, at most the timeout. Those not
+     * finished are swept again by the next run.
+     */
+    public static void awaitSweeping(Duration timeout) {
+        try{
+            CompletableFuture.allOf(SWEEPING.toArray(new CompletableFuture<?>[0]))
+                .get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+
+        }catch(TimeoutException e){
+            log.debug("Sweeping abandoned after {}", timeout);
+        }catch(ExecutionException e){
+            log.debug("Sweeping failed", e);
+        }catch(InterruptedException e){
+            Thread.currentThread().interrupt();
+        }
+    }
+}
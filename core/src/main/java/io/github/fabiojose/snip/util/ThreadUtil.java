@@ -0,0 +1,42 @@
+package io.github.fabiojose.snip.util;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import lombok.experimental.UtilityClass;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * @author fabiojose
+ */
+@UtilityClass
+@Slf4j
+public class ThreadUtil {
+
+    private static final String VIRTUAL_THREAD_EXECUTOR = "newVirtualThreadPerTaskExecutor";
+
+    /**
+     * Looked up at runtime, because the baseline is Java 11 and virtual
+     * threads are final since Java 21.
+     *
+     * @return An executor that starts a new virtual thread per task, or
+     * empty when the running JVM does not support them
+     */
+    public static Optional<ExecutorService> newVirtualThreadPerTaskExecutor() {
+        try{
+            var factory = Executors.class.getMethod(VIRTUAL_THREAD_EXECUTOR);
+            return Optional.of((ExecutorService)factory.invoke(null));
+
+        }catch(NoSuchMethodException | IllegalAccessException e){
+            log.debug("Virtual threads not supported by {}", Runtime.version());
+            return Optional.empty();
+
+        }catch(InvocationTargetException e){
+            // preview feature disabled
+            log.debug("Virtual threads not enabled", e.getCause());
+            return Optional.empty();
+        }
+    }
+}
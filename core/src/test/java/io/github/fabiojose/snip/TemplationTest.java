@@ -0,0 +1,101 @@
+package io.github.fabiojose.snip;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.ok;
+import static com.github.tomakehurst.wiremock.client.WireMock.stubFor;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+
+import com.github.tomakehurst.wiremock.junit5.WireMockTest;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import io.github.fabiojose.snip.util.FileUtil;
+import net.lingala.zip4j.ZipFile;
+
+@WireMockTest(httpPort = 10009)
+public class TemplationTest {
+
+    @TempDir
+    Path root;
+
+    private Path scaffold(String name, boolean link) {
+
+        return Templation.newBuilder()
+            .withLocation(URI.create("http://localhost:10009/templation.zip"))
+            .withProjectLocation(root)
+            .withProjectName(name)
+            .withProjectVersion("1.0.0")
+            .withProjectNamespace("com.example")
+            .withStaging(root.resolve("staging"))
+            .withCache(root.resolve("cache"))
+            .withLink(link)
+            .build()
+            .newProject();
+    }
+
+    @Test
+    void should_not_change_cached_templation_through_linked_file() throws IOException {
+
+        // setup
+        var templation = Files.createDirectories(root.resolve("templation-main"));
+        Files.writeString(templation.resolve("Plain.txt"), "plain");
+        Files.writeString(templation.resolve("__name_.txt"), "__name_");
+
+        var archive = root.resolve("templation.zip");
+        new ZipFile(archive.toFile()).addFolder(templation.toFile());
+
+        stubFor(get("/templation.zip")
+            .willReturn(ok()
+                .withBody(Files.readAllBytes(archive))));
+
+        var linked = scaffold("linked-app", true);
+        Files.writeString(linked.resolve("Plain.txt"), "CORRUPTED",
+            StandardOpenOption.APPEND);
+
+        // act
+        var actual = scaffold("later-app", false);
+
+        // assert
+        assertEquals("plain", Files.readString(actual.resolve("Plain.txt")));
+        assertEquals("later-app", Files.readString(actual.resolve("later-app.txt")));
+    }
+
+    @Test
+    void should_not_leave_failed_project_behind() throws IOException {
+
+        // setup, a file and a folder with the same final path
+        var templation = Files.createDirectories(root.resolve("templation"));
+        Files.writeString(templation.resolve("__name_"), "file");
+        Files.createDirectories(templation.resolve("failed-app"));
+        Files.writeString(templation.resolve("failed-app/inner.txt"), "inner");
+
+        var staging = root.resolve(".snip");
+        var templationBuilder = Templation.newBuilder()
+            .withLocation(templation.toUri())
+            .withProjectLocation(root)
+            .withProjectName("failed-app")
+            .withProjectVersion("1.0.0")
+            .withProjectNamespace("com.example")
+            .withStaging(staging);
+
+        // act
+        assertThrows(RuntimeException.class, () ->
+            templationBuilder.build().newProject());
+
+        FileUtil.awaitSweeping(Duration.ofSeconds(10));
+
+        // assert
+        assertFalse(Files.exists(root.resolve("failed-app")));
+        assertFalse(Files.exists(staging));
+    }
+}
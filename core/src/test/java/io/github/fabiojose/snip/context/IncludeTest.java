@@ -4,9 +4,12 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
 
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 public class IncludeTest {
 
@@ -81,6 +84,34 @@ public class IncludeTest {
         assertTrue(actual);
     }
 
+    @Test
+    public void should_ignore_whole_subtree() {
+
+        // setup
+        var file = Path.of("./src/test/resources/.snipignore");
+        var include = Include.create(file);
+
+        // act
+        var actual = include.subtree(Path.of("./src/test/resources/example/.git"));
+
+        // assert
+        assertTrue(actual);
+    }
+
+    @Test
+    public void should_not_ignore_subtree_of_similar_name() {
+
+        // setup
+        var file = Path.of("./src/test/resources/.snipignore");
+        var include = Include.create(file);
+
+        // act
+        var actual = include.subtree(Path.of("./src/test/resources/example/.github"));
+
+        // assert
+        assertFalse(actual);
+    }
+
     @Test
     public void should_ignore_wildcard() {
 
@@ -136,4 +167,142 @@ public class IncludeTest {
         // assert
         assertTrue(actual);
     }
+
+    private static Include gitignore(Path root) throws IOException {
+
+        var ignore = root.resolve(Context.SNIP_IGNORE);
+        Files.writeString(ignore, String.join("\n",
+            "# comment",
+            "*.log",
+            "!keep.log",
+            "/dist",
+            "docs/**/tmp/",
+            "vendor/",
+            "!vendor/allowed.js",
+            "**/generated",
+            "file[0-9].txt",
+            "cmake-build*/"
+        ));
+
+        return Include.create(ignore);
+    }
+
+    @Test
+    public void should_negate_previous_rule(@TempDir Path root) throws IOException {
+
+        // setup
+        var include = gitignore(root);
+
+        // act
+        var actual = include.it(root.resolve("src/keep.log"), false);
+
+        // assert
+        assertTrue(actual);
+        assertFalse(include.it(root.resolve("src/app.log"), false));
+    }
+
+    @Test
+    public void should_anchor_to_ignore_file(@TempDir Path root) throws IOException {
+
+        // setup
+        var include = gitignore(root);
+
+        // act
+        var actual = include.it(root.resolve("dist"), true);
+
+        // assert
+        assertFalse(actual);
+        assertTrue(include.it(root.resolve("src/dist"), true));
+    }
+
+    @Test
+    public void should_match_any_depth(@TempDir Path root) throws IOException {
+
+        // setup
+        var include = gitignore(root);
+
+        // act
+        var actual = include.it(root.resolve("docs/api/v1/tmp/index.html"), false);
+
+        // assert
+        assertFalse(actual);
+        assertFalse(include.it(root.resolve("docs/tmp"), true));
+        assertFalse(include.it(root.resolve("a/b/generated/Some.java"), false));
+        assertTrue(include.it(root.resolve("docs/api/tmp.md"), false));
+    }
+
+    @Test
+    public void should_not_include_again_within_ignored_folder(@TempDir Path root)
+        throws IOException {
+
+        // setup
+        var include = gitignore(root);
+
+        // act
+        var actual = include.it(root.resolve("vendor/allowed.js"), false);
+
+        // assert
+        assertFalse(actual);
+        assertTrue(include.subtree(root.resolve("vendor")));
+    }
+
+    @Test
+    public void should_match_folder_rule_just_with_folders(@TempDir Path root)
+        throws IOException {
+
+        // setup
+        var include = gitignore(root);
+
+        // act
+        var actual = include.it(root.resolve("src/vendor"), false);
+
+        // assert
+        assertTrue(actual);
+        assertFalse(include.it(root.resolve("src/vendor"), true));
+    }
+
+    @Test
+    public void should_match_character_class(@TempDir Path root) throws IOException {
+
+        // setup
+        var include = gitignore(root);
+
+        // act
+        var actual = include.file(root.resolve("file7.txt"));
+
+        // assert
+        assertFalse(actual);
+        assertTrue(include.file(root.resolve("fileA.txt")));
+    }
+
+    @Test
+    public void should_match_prefix_glob(@TempDir Path root) throws IOException {
+
+        // setup
+        var include = gitignore(root);
+
+        // act
+        var actual = include.directory(root.resolve("cmake-build-debug"));
+
+        // assert
+        assertFalse(actual);
+        assertTrue(include.it(root.resolve("cmake-build.txt"), false));
+        assertTrue(include.directory(root.resolve("cmake")));
+    }
+
+    @Test
+    public void should_evaluate_just_the_directory_itself(@TempDir Path root)
+        throws IOException {
+
+        // setup
+        var include = gitignore(root);
+
+        // act
+        var actual = include.directory(root.resolve("vendor/lib"));
+
+        // assert
+        assertTrue(actual);
+        assertFalse(include.subtree(root.resolve("src/lib")));
+        assertTrue(include.subtree(root.resolve("vendor/lib")));
+    }
 }
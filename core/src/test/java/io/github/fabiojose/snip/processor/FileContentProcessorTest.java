@@ -0,0 +1,218 @@
+package io.github.fabiojose.snip.processor;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import io.github.fabiojose.snip.context.Binary;
+import io.github.fabiojose.snip.context.Context;
+import io.github.fabiojose.snip.context.Options;
+import io.github.fabiojose.snip.context.Placeholders;
+
+public class FileContentProcessorTest {
+
+    @TempDir
+    Path target;
+
+    @TempDir
+    Path project;
+
+    private Context context() {
+        return context(Binary.none(), Options.defaults());
+    }
+
+    /**
+     * From the templation at target into the project
+     */
+    private Context context(Binary binary, Options options) {
+
+        var placeholders = Placeholders.builder()
+            .name("my-app")
+            .version("1.0.0")
+            .namespace("com.example")
+            .parameters(List.of())
+            .build();
+
+        return Context.create(placeholders, target, project, binary, options);
+    }
+
+    private static CommitProcessor commit(Context context) {
+
+        var processor = (CommitProcessor)Processor.forCommit(Plan.create(context));
+        processor.process(context);
+
+        return processor;
+    }
+
+    @Test
+    public void should_find_marker() throws IOException {
+
+        // setup
+        var file = Files.writeString(target.resolve("with.txt"), "name=__name_");
+
+        // act
+        var actual = Sniffer.sniff(file);
+
+        // assert
+        assertEquals(Sniffer.Kind.TEMPLATE, actual);
+    }
+
+    @Test
+    public void should_not_find_marker() throws IOException {
+
+        // setup
+        var file = Files.writeString(target.resolve("without.txt"), "snake_case _name_");
+
+        // act
+        var actual = Sniffer.sniff(file);
+
+        // assert
+        assertEquals(Sniffer.Kind.PLAIN, actual);
+    }
+
+    @Test
+    public void should_sniff_binary_by_magic_number() throws IOException {
+
+        // setup
+        var file = Files.write(target.resolve("image.png"),
+            new byte[]{(byte)0x89, 'P', 'N', 'G', '_', '_', 'n'});
+
+        // act
+        var actual = Sniffer.sniff(file);
+
+        // assert
+        assertEquals(Sniffer.Kind.BINARY, actual);
+    }
+
+    @Test
+    public void should_sniff_binary_by_nul_byte() throws IOException {
+
+        // setup
+        var file = Files.write(target.resolve("data.bin"),
+            new byte[]{'_', '_', 'n', 0x00, 'x'});
+
+        // act
+        var actual = Sniffer.sniff(file);
+
+        // assert
+        assertEquals(Sniffer.Kind.BINARY, actual);
+    }
+
+    @Test
+    public void should_not_rewrite_declared_binary() throws IOException {
+
+        // setup
+        Files.writeString(target.resolve("seed.dat"), "name=__name_\n");
+        var context = context(Binary.create(List.of("*.dat")), Options.defaults());
+
+        // act
+        var processor = commit(context);
+
+        // assert
+        assertEquals(1, processor.getCopied());
+        assertEquals("name=__name_\n", Files.readString(project.resolve("seed.dat")));
+    }
+
+    @Test
+    public void should_preserve_line_endings_and_encoding() throws IOException {
+
+        // setup
+        var file = Files.write(target.resolve("latin1.properties"),
+            "# ação\r\nname=__name_\r\n".getBytes(StandardCharsets.ISO_8859_1));
+        var processor = new FileContentProcessor();
+        var replacer = Replacer.create(context().getPlaceholders().entries());
+
+        // act
+        processor.rewrite(replacer, file);
+
+        // assert
+        assertArrayEquals("# ação\r\nname=my-app\r\n".getBytes(StandardCharsets.ISO_8859_1),
+            Files.readAllBytes(file));
+    }
+
+    @Test
+    public void should_use_declared_charset_for_non_ascii_values() throws IOException {
+
+        // setup
+        var file = Files.writeString(target.resolve("pom.xml"),
+            "<?xml version=\"1.0\" encoding=\"ISO-8859-1\"?>\n<name>__c_author_</name>\n",
+            StandardCharsets.ISO_8859_1);
+
+        var processor = new FileContentProcessor();
+        var replacer = Replacer.create(Map.of("__c_author_", "Fábio"));
+
+        // act
+        processor.rewrite(replacer, file);
+
+        // assert
+        assertEquals("<?xml version=\"1.0\" encoding=\"ISO-8859-1\"?>\n<name>Fábio</name>\n",
+            Files.readString(file, StandardCharsets.ISO_8859_1));
+    }
+
+    @Test
+    public void should_rewrite_utf16_files() throws IOException {
+
+        // setup
+        Files.write(target.resolve("utf16.txt"),
+            "\uFEFFname=__name_".getBytes(StandardCharsets.UTF_16LE));
+
+        // act
+        var processor = commit(context());
+
+        // assert
+        assertEquals(1, processor.getRewritten());
+        assertArrayEquals("\uFEFFname=my-app".getBytes(StandardCharsets.UTF_16LE),
+            Files.readAllBytes(project.resolve("utf16.txt")));
+    }
+
+    @Test
+    public void should_skip_files_without_placeholder() throws IOException {
+
+        // setup
+        Files.writeString(target.resolve("with.txt"), "name=__name_\n");
+        Files.writeString(target.resolve("without.txt"), "name=app\n");
+
+        // act
+        var processor = commit(context());
+
+        // assert
+        assertEquals(1, processor.getRewritten());
+        assertEquals(1, processor.getCopied());
+        assertEquals("name=my-app\n", Files.readString(project.resolve("with.txt")));
+        assertEquals("name=app\n", Files.readString(project.resolve("without.txt")));
+    }
+
+    @Test
+    public void should_rewrite_through_pipeline() throws IOException {
+
+        // setup
+        for(int i = 0; i < 100; i++){
+            Files.writeString(target.resolve("with-" + i + ".txt"), i + "=__name_\r\n");
+            Files.writeString(target.resolve("without-" + i + ".txt"), i + "=app\n");
+        }
+        Files.write(target.resolve("image.png"), new byte[]{(byte)0x89, 'P', 'N', 'G', '_', '_'});
+
+        var options = Options.builder()
+            .execution(Options.Execution.PIPELINE)
+            .parallelism(3)
+            .build();
+
+        // act
+        var processor = commit(context(Binary.none(), options));
+
+        // assert
+        assertEquals(100, processor.getRewritten());
+        assertEquals(101, processor.getCopied());
+        assertEquals("42=my-app\r\n", Files.readString(project.resolve("with-42.txt")));
+        assertEquals("42=app\n", Files.readString(project.resolve("without-42.txt")));
+    }
+}
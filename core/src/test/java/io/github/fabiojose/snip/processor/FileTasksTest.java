@@ -0,0 +1,104 @@
+package io.github.fabiojose.snip.processor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+
+import io.github.fabiojose.snip.context.Options;
+
+public class FileTasksTest {
+
+    private static List<Integer> files(int count) {
+        return IntStream.range(0, count).boxed().collect(Collectors.toList());
+    }
+
+    @Test
+    public void should_run_every_task() {
+
+        // setup
+        var options = Options.builder().parallelism(4).maxOpenFiles(2).build();
+        Set<Integer> actual = ConcurrentHashMap.newKeySet();
+
+        // act
+        FileTasks.run(files(1000), options, actual::add);
+
+        // assert
+        assertEquals(1000, actual.size());
+    }
+
+    @Test
+    public void should_run_every_task_over_virtual_threads_or_fallback() {
+
+        // setup
+        var options = Options.builder()
+            .execution(Options.Execution.VIRTUAL_THREADS)
+            .parallelism(4)
+            .maxOpenFiles(2)
+            .build();
+        Set<Integer> actual = ConcurrentHashMap.newKeySet();
+        var running = new AtomicInteger();
+        var max = new AtomicInteger();
+
+        // act
+        FileTasks.run(files(1000), options, f -> {
+            max.accumulateAndGet(running.incrementAndGet(), Math::max);
+            actual.add(f);
+            running.decrementAndGet();
+        });
+
+        // assert
+        assertEquals(1000, actual.size());
+        assertTrue(max.get() <= 2);
+    }
+
+    @Test
+    public void should_not_exceed_max_open_files() {
+
+        // setup
+        var options = Options.builder().parallelism(8).maxOpenFiles(2).build();
+        var running = new AtomicInteger();
+        var max = new AtomicInteger();
+
+        // act
+        FileTasks.run(files(200), options, f -> {
+            max.accumulateAndGet(running.incrementAndGet(), Math::max);
+            Thread.yield();
+            running.decrementAndGet();
+        });
+
+        // assert
+        assertTrue(max.get() <= 2);
+    }
+
+    @Test
+    public void should_propagate_failure_and_cancel_remaining() {
+
+        // setup
+        var options = Options.builder().parallelism(4).maxOpenFiles(4).build();
+        var processed = new AtomicInteger();
+
+        // act
+        var actual = assertThrows(UncheckedIOException.class, () ->
+            FileTasks.run(files(10_000), options, f -> {
+                if(f == 0){
+                    throw new IOException("failure at " + f);
+                }
+                processed.incrementAndGet();
+            }));
+
+        // assert
+        assertEquals("failure at 0", actual.getCause().getMessage());
+        assertTrue(processed.get() < 10_000 - 1);
+    }
+}
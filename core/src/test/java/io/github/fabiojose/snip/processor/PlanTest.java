@@ -0,0 +1,276 @@
+package io.github.fabiojose.snip.processor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import io.github.fabiojose.snip.context.Binary;
+import io.github.fabiojose.snip.context.Context;
+import io.github.fabiojose.snip.context.Options;
+import io.github.fabiojose.snip.context.Placeholders;
+import io.github.fabiojose.snip.processor.Plan.Action;
+
+public class PlanTest {
+
+    @TempDir
+    Path template;
+
+    @TempDir
+    Path target;
+
+    private Context context() {
+        return context(Options.defaults());
+    }
+
+    private Context context(Options options) {
+
+        var placeholders = Placeholders.builder()
+            .name("my-app")
+            .version("1.0.0")
+            .namespace("com.example")
+            .parameters(List.of())
+            .build();
+
+        return Context.create(placeholders, template, target.resolve("my-app"),
+            Binary.none(), options);
+    }
+
+    private void template() throws IOException {
+
+        var files = Map.of(
+            "src/__namespace_/__name_.java", "package __namespace_;",
+            "src/__namespace_/Plain.java", "class Plain {}",
+            "README.md", "# __name_",
+            ".git/HEAD", "ref: refs/heads/main",
+            ".snipignore", "README.md\n"
+        );
+
+        for(var file : files.entrySet()){
+            var path = template.resolve(file.getKey());
+            Files.createDirectories(path.getParent());
+            Files.writeString(path, file.getValue());
+        }
+        Files.createDirectories(template.resolve("empty"));
+    }
+
+    private static Map<String, Action> actions(Plan plan) {
+        return plan.getEntries().stream()
+            .collect(Collectors.toMap(
+                e -> e.getTarget().toString().replace('\\', '/'),
+                Plan.Entry::getAction));
+    }
+
+    @Test
+    public void should_plan_without_writing() throws IOException {
+
+        // setup
+        template();
+
+        // act
+        var actual = Plan.create(context());
+
+        // assert
+        var actions = actions(actual);
+        assertEquals(Action.REWRITE, actions.get("src/com/example/my-app.java"));
+        assertEquals(Action.COPY, actions.get("src/com/example/Plain.java"));
+        assertEquals(Action.COPY, actions.get("README.md"));
+        assertEquals(Action.SKIP, actions.get(".git"));
+        assertEquals(Action.DIRECTORY, actions.get("empty"));
+        assertFalse(Files.exists(context().getTarget()));
+    }
+
+    @Test
+    public void should_place_entries_merging_namespace_trees() throws IOException {
+
+        // setup
+        var files = Map.of(
+            "src/main/java/__namespace_/__name_.java", "package __namespace_;",
+            "src/main/java/com/example/Existing.java", "class Existing {}",
+            "src/main/java/__namespace_/model/__c_domain_.java", "class __c_domain_ {}",
+            "src/test/java/__namespace_/model/__c_domain_Test.java", "class __c_domain_Test {}",
+            "src/test/java/com/example/model/Existing.java", "class Existing {}",
+            "__name_/__c_domain_/__version_/__name_-__version_.txt", "__c_domain_"
+        );
+
+        for(var file : files.entrySet()){
+            var path = template.resolve(file.getKey());
+            Files.createDirectories(path.getParent());
+            Files.writeString(path, file.getValue());
+        }
+
+        var placeholders = Placeholders.builder()
+            .name("my-app")
+            .version("1.0.0")
+            .namespace("com.example")
+            .parameters(List.of("__c_domain_=Order"))
+            .build();
+        var context = Context.create(placeholders, template, target.resolve("my-app"));
+
+        // act
+        Processor.forCommit(Plan.create(context)).process(context);
+
+        // assert
+        var project = context.getTarget();
+        assertEquals("package com.example;",
+            Files.readString(project.resolve("src/main/java/com/example/my-app.java")));
+        assertEquals("class Existing {}",
+            Files.readString(project.resolve("src/main/java/com/example/Existing.java")));
+        assertEquals("class Order {}",
+            Files.readString(project.resolve("src/main/java/com/example/model/Order.java")));
+        assertEquals("class OrderTest {}",
+            Files.readString(project.resolve("src/test/java/com/example/model/OrderTest.java")));
+        assertEquals("class Existing {}",
+            Files.readString(project.resolve("src/test/java/com/example/model/Existing.java")));
+        assertEquals("Order",
+            Files.readString(project.resolve("my-app/Order/1.0.0/my-app-1.0.0.txt")));
+    }
+
+    @Test
+    public void should_copy_ignored_subtree_as_it_is() throws IOException {
+
+        // setup
+        template();
+        Files.writeString(template.resolve(".snipignore"), "generated/\n");
+
+        var file = template.resolve("generated/__name_/__name_.txt");
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, "__name_");
+
+        // act
+        var actual = Plan.create(context());
+
+        // assert
+        var actions = actions(actual);
+        assertEquals(Action.DIRECTORY, actions.get("generated/__name_"));
+        assertEquals(Action.COPY, actions.get("generated/__name_/__name_.txt"));
+        assertEquals(Action.REWRITE, actions.get("src/com/example/my-app.java"));
+    }
+
+    @Test
+    public void should_write_plan_as_json() throws IOException {
+
+        // setup
+        template();
+        var plan = Plan.create(context());
+        var file = target.resolve("plan.json");
+
+        // act
+        plan.write(file);
+
+        // assert
+        var actual = new JSONObject(Files.readString(file));
+        assertEquals(plan.bytes(), actual.getLong("bytes"));
+        assertEquals(plan.getEntries().size(), actual.getJSONArray("entries").length());
+    }
+
+    @Test
+    public void should_skip_new_project_within_templation() throws IOException {
+
+        // setup
+        template();
+        var placeholders = Placeholders.builder()
+            .name("my-app")
+            .version("1.0.0")
+            .namespace("com.example")
+            .parameters(List.of())
+            .build();
+        var context = Context.create(placeholders, template, template.resolve("my-app"));
+        Files.createDirectories(context.getTarget().resolve("src"));
+
+        // act
+        var actual = Plan.create(context);
+
+        // assert
+        var actions = actions(actual);
+        assertEquals(Action.SKIP, actions.get("my-app"));
+        assertFalse(actions.containsKey("my-app/src"));
+    }
+
+    @Test
+    public void should_commit_plan() throws IOException {
+
+        // setup
+        template();
+        var context = context();
+        var plan = Plan.create(context);
+
+        // act
+        Processor.forCommit(plan).process(context);
+
+        // assert
+        var project = context.getTarget();
+        assertEquals("package com.example;",
+            Files.readString(project.resolve("src/com/example/my-app.java")));
+        assertEquals("class Plain {}",
+            Files.readString(project.resolve("src/com/example/Plain.java")));
+        assertEquals("# __name_", Files.readString(project.resolve("README.md")));
+        assertTrue(Files.isDirectory(project.resolve("empty")));
+        assertFalse(Files.exists(project.resolve(".git")));
+        assertTrue(Files.exists(template.resolve("src/__namespace_/__name_.java")));
+    }
+
+    @Test
+    public void should_hard_link_read_only_files_without_placeholders() throws IOException {
+
+        // setup
+        template();
+        Files.setPosixFilePermissions(template.resolve("src/__namespace_/Plain.java"),
+            PosixFilePermissions.fromString("r--r--r--"));
+
+        var context = context(Options.builder().link(true).build());
+        var plan = Plan.create(context);
+        var processor = (CommitProcessor)Processor.forCommit(plan);
+
+        // act
+        processor.process(context);
+
+        // assert
+        var project = context.getTarget();
+        assertTrue(Files.isSameFile(template.resolve("src/__namespace_/Plain.java"),
+            project.resolve("src/com/example/Plain.java")));
+        assertFalse(Files.isSameFile(template.resolve("README.md"),
+            project.resolve("README.md")));
+        assertFalse(Files.isSameFile(template.resolve("src/__namespace_/__name_.java"),
+            project.resolve("src/com/example/my-app.java")));
+        assertEquals(1, processor.getHardLinked());
+    }
+
+    @Test
+    public void should_render_identical_files_once() throws IOException {
+
+        // setup
+        template();
+        Files.writeString(template.resolve("src/__namespace_/Copy.java"), "package __namespace_;");
+        var context = context();
+        var plan = Plan.create(context);
+        var processor = (CommitProcessor)Processor.forCommit(plan);
+
+        // act
+        processor.process(context);
+
+        // assert
+        var actions = actions(plan);
+        assertEquals(1, actions.values().stream()
+            .filter(Action.DUPLICATE::equals).count());
+        assertEquals("package __namespace_;".length(), plan.saved());
+        assertEquals(1, processor.getDuplicated());
+
+        var project = context.getTarget();
+        assertEquals("package com.example;",
+            Files.readString(project.resolve("src/com/example/my-app.java")));
+        assertEquals("package com.example;",
+            Files.readString(project.resolve("src/com/example/Copy.java")));
+    }
+}
@@ -0,0 +1,168 @@
+package io.github.fabiojose.snip.processor;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+public class ReplacerTest {
+
+    @Test
+    public void should_replace_all_placeholders() {
+
+        // setup
+        var replacer = Replacer.create(Map.of(
+            "__name_", "my-app",
+            "__version_", "1.0.0"
+        ));
+
+        // act
+        var actual = replacer.replace("project=__name_\nversion=__version_ __name_");
+
+        // assert
+        assertEquals("project=my-app\nversion=1.0.0 my-app", actual);
+    }
+
+    @Test
+    public void should_write_values_literally() {
+
+        // setup
+        var replacer = Replacer.create(Map.of("__c_custom_", "$1 \\ & .*"));
+
+        // act
+        var actual = replacer.replace("custom=__c_custom_");
+
+        // assert
+        assertEquals("custom=$1 \\ & .*", actual);
+    }
+
+    @Test
+    public void should_prefer_the_longest_placeholder() {
+
+        // setup
+        var replacer = Replacer.create(Map.of(
+            "__c_domain_", "Domain",
+            "__c_domain_Controller_", "Controller"
+        ));
+
+        // act
+        var actual = replacer.replace("__c_domain_Controller_ __c_domain_Control");
+
+        // assert
+        assertEquals("Controller DomainControl", actual);
+    }
+
+    @Test
+    public void should_match_after_partial_match() {
+
+        // setup
+        var replacer = Replacer.create(Map.of("__name_", "app"));
+
+        // act
+        var actual = replacer.replace("___name_ __na __name___name_");
+
+        // assert
+        assertEquals("_app __na appapp", actual);
+    }
+
+    @Test
+    public void should_match_placeholder_within_failed_partial_match() {
+
+        // setup
+        var replacer = Replacer.create(Map.of(
+            "__c_host_port_", "Port",
+            "__c_port_", "8080"
+        ));
+
+        // act
+        var actual = replacer.replace("__c_host__c_port_ __c_host_port__ __c_host_por");
+
+        // assert
+        assertEquals("__c_host8080 Port_ __c_host_por", actual);
+    }
+
+    @Test
+    public void should_match_across_chunks() throws IOException {
+
+        // setup
+        var replacer = Replacer.create(Map.of("__namespace_", "com.example"));
+        var out = new StringWriter();
+        var scan = replacer.scan(out);
+
+        // act
+        scan.feed("package __name".toCharArray(), 0, 14);
+        scan.feed("space_;".toCharArray(), 0, 7);
+        scan.finish();
+
+        // assert
+        assertEquals("package com.example;", out.toString());
+    }
+
+    @Test
+    public void should_keep_partial_match_at_end_of_input() throws IOException {
+
+        // setup
+        var replacer = Replacer.create(Map.of("__version_", "1.0.0"));
+        var out = new StringWriter();
+
+        // act
+        replacer.replace(new StringReader("version=__vers"), out);
+
+        // assert
+        assertEquals("version=__vers", out.toString());
+    }
+
+    @Test
+    public void should_keep_bytes_out_of_placeholders() throws IOException {
+
+        // setup
+        var replacer = Replacer.create(Map.of("__name_", "app"));
+        var latin1 = "ação=__name_\r\n".getBytes(StandardCharsets.ISO_8859_1);
+        var out = new ByteArrayOutputStream();
+
+        // act
+        replacer.replace(new ByteArrayInputStream(latin1), out,
+            () -> StandardCharsets.ISO_8859_1);
+
+        // assert
+        assertArrayEquals("ação=app\r\n".getBytes(StandardCharsets.ISO_8859_1),
+            out.toByteArray());
+    }
+
+    @Test
+    public void should_encode_non_ascii_values_with_charset() throws IOException {
+
+        // setup
+        var replacer = Replacer.create(Map.of("__c_author_", "Fábio"));
+        var out = new ByteArrayOutputStream();
+
+        // act
+        replacer.replace(new ByteArrayInputStream("@author __c_author_".getBytes()), out,
+            () -> StandardCharsets.UTF_16BE);
+
+        // assert
+        var expected = new ByteArrayOutputStream();
+        expected.write("@author ".getBytes(StandardCharsets.US_ASCII));
+        expected.write("Fábio".getBytes(StandardCharsets.UTF_16BE));
+
+        assertArrayEquals(expected.toByteArray(), out.toByteArray());
+    }
+
+    @Test
+    public void should_throw_when_placeholder_is_not_ascii() {
+
+        // act
+        assertThrows(IllegalArgumentException.class, () ->
+            Replacer.create(Map.of("__açaí_", "fruit")));
+
+    }
+}
@@ -3,19 +3,28 @@ package io.github.fabiojose.snip.templation;
 import com.github.tomakehurst.wiremock.junit5.WireMockTest;
 import com.github.tomakehurst.wiremock.matching.UrlPattern;
 
-import org.apache.commons.io.FileUtils;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import io.github.fabiojose.snip.support.ByPassTLSValidation;
 
 import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
 
 @WireMockTest(httpPort = 10008, httpsEnabled = true, httpsPort = 10443)
 public class TemplationFetcherTest {
@@ -41,7 +50,7 @@ public class TemplationFetcherTest {
         assertTrue(Files.exists(actual));
 
         // cleanup
-        FileUtils.deleteDirectory(actual.toFile());
+        fetcher.close();
     }
 
     @Test
@@ -67,7 +76,361 @@ public class TemplationFetcherTest {
         assertTrue(Files.exists(actual));
 
         // cleanup
-        FileUtils.deleteDirectory(actual.toFile());
+        fetcher.close();
+    }
+
+    @Test
+    void should_download_to_staging_and_delete_on_close(@TempDir Path destination)
+        throws IOException {
+
+        // setup
+        var zipFile = Paths.get("src/test/resources/java11-quarkus-maven.zip");
+
+        stubFor(head(UrlPattern.ANY).willReturn(ok()));
+
+        stubFor(get("/http/staging")
+            .willReturn(ok()
+                .withBody(Files.readAllBytes(zipFile))));
+
+        var staging = destination.resolve(TemplationFetcher.STAGING_DIR);
+        var fetcher = TemplationFetcher.create(
+            URI.create("http://localhost:10008/http/staging"), staging);
+
+        // act
+        fetcher.fetch();
+        var downloaded = Files.list(staging).count();
+        fetcher.close();
+
+        // assert
+        assertEquals(1, downloaded);
+        assertFalse(Files.exists(staging));
+    }
+
+    @Test
+    void should_stage_in_temporary_directory_when_same_file_system() {
+
+        // setup
+        var destination = Paths.get(TemplationFetcher.TMP_DIR);
+
+        // act
+        var actual = TemplationFetcher.staging(destination);
+
+        // assert
+        assertEquals(Paths.get(TemplationFetcher.SNIP_TMP_DIR), actual);
+    }
+
+    @Test
+    void should_read_local_templation_in_place(@TempDir Path templation) throws IOException {
+
+        // setup
+        Files.writeString(templation.resolve("__name_.txt"), "__name_");
+        var fetcher = TemplationFetcher.create(templation.toUri());
+
+        // act
+        var actual = fetcher.fetch();
+
+        // assert
+        assertEquals(templation, actual);
+
+        // cleanup
+        fetcher.close();
+    }
+
+    @Test
+    void should_reuse_cached_tree_of_same_archive(@TempDir Path cache) throws IOException {
+
+        // setup
+        var zipFile = Paths.get("src/test/resources/java11-quarkus-maven.zip");
+
+        stubFor(head(UrlPattern.ANY).willReturn(ok()));
+
+        stubFor(get("/http/cache")
+            .willReturn(ok()
+                .withBody(Files.readAllBytes(zipFile))));
+
+        var uri = URI.create("http://localhost:10008/http/cache");
+        var staging = cache.resolve("staging");
+
+        Path expected;
+        try(var fetcher = TemplationFetcher.create(uri, staging, TemplationCache.create(cache))){
+            expected = fetcher.fetch();
+        }
+
+        // act
+        Path actual;
+        try(var fetcher = TemplationFetcher.create(uri, staging, TemplationCache.create(cache))){
+            actual = fetcher.fetch();
+        }
+
+        // assert
+        assertEquals(expected, actual);
+        assertTrue(Files.exists(actual.resolve(".snip.yml")));
+        assertTrue(actual.startsWith(cache));
+    }
+
+    @Test
+    void should_download_github_commit_just_once(@TempDir Path cache) throws IOException {
+
+        // setup
+        var zipFile = Paths.get("src/test/resources/java11-quarkus-maven.zip");
+        var sha = "0123456789abcdef0123456789abcdef01234567";
+
+        stubFor(head(UrlPattern.ANY).willReturn(ok()));
+
+        stubFor(get("/repos/owner/templation/commits/HEAD")
+            .willReturn(ok(sha)));
+
+        stubFor(get("/repos/owner/templation/zipball/" + sha)
+            .willReturn(ok()
+                .withBody(Files.readAllBytes(zipFile))));
+
+        System.setProperty(TemplationFetcher.GITHUB_API_PROPERTY, "http://localhost:10008/");
+        try{
+            var uri = URI.create("owner/templation");
+            var staging = cache.resolve("staging");
+
+            try(var fetcher = TemplationFetcher.create(uri, staging, TemplationCache.create(cache))){
+                fetcher.fetch();
+            }
+
+            // act
+            Path actual;
+            try(var fetcher = TemplationFetcher.create(uri, staging, TemplationCache.create(cache))){
+                actual = fetcher.fetch();
+            }
+
+            // assert
+            assertEquals(TemplationCache.COMMIT_PREFIX + sha, actual.getFileName().toString());
+            verify(1, getRequestedFor(urlEqualTo("/repos/owner/templation/zipball/" + sha)));
+
+        }finally{
+            System.clearProperty(TemplationFetcher.GITHUB_API_PROPERTY);
+        }
+    }
+
+    @Test
+    void should_revalidate_cached_tree_with_etag(@TempDir Path cache) throws IOException {
+
+        // setup
+        var zipFile = Paths.get("src/test/resources/java11-quarkus-maven.zip");
+
+        stubFor(head(UrlPattern.ANY).willReturn(ok()));
+
+        stubFor(get("/http/etag")
+            .willReturn(ok()
+                .withHeader("ETag", "\"v1\"")
+                .withBody(Files.readAllBytes(zipFile))));
+
+        stubFor(get("/http/etag")
+            .withHeader("If-None-Match", equalTo("\"v1\""))
+            .willReturn(aResponse().withStatus(304)));
+
+        var uri = URI.create("http://localhost:10008/http/etag");
+        var staging = cache.resolve("staging");
+
+        Path expected;
+        try(var fetcher = TemplationFetcher.create(uri, staging, TemplationCache.create(cache))){
+            expected = fetcher.fetch();
+        }
+
+        // act
+        Path actual;
+        try(var fetcher = TemplationFetcher.create(uri, staging, TemplationCache.create(cache))){
+            actual = fetcher.fetch();
+        }
+
+        // assert
+        assertEquals(expected, actual);
+        verify(1, getRequestedFor(urlEqualTo("/http/etag"))
+            .withHeader("If-None-Match", equalTo("\"v1\"")));
+    }
+
+    @Test
+    void should_serve_stale_and_revalidate_in_background(@TempDir Path cache)
+        throws IOException {
+
+        // setup
+        var zipFile = Paths.get("src/test/resources/java11-quarkus-maven.zip");
+
+        stubFor(head(UrlPattern.ANY).willReturn(ok()));
+
+        stubFor(get("/http/stale")
+            .willReturn(ok()
+                .withHeader("Last-Modified", "Fri, 09 Apr 2021 11:11:00 GMT")
+                .withBody(Files.readAllBytes(zipFile))));
+
+        stubFor(get("/http/stale")
+            .withHeader("If-Modified-Since", equalTo("Fri, 09 Apr 2021 11:11:00 GMT"))
+            .willReturn(aResponse()
+                .withStatus(304)
+                .withFixedDelay(500)));
+
+        var uri = URI.create("http://localhost:10008/http/stale");
+        var staging = cache.resolve("staging");
+        var stale = TemplationCache.create(cache, Duration.ofHours(1));
+
+        Path expected;
+        try(var fetcher = TemplationFetcher.create(uri, staging, stale)){
+            expected = fetcher.fetch();
+        }
+
+        // act
+        Path actual;
+        CompletableFuture<Void> refreshing;
+        try(var fetcher = TemplationFetcher.create(uri, staging, stale)){
+            actual = fetcher.fetch();
+            refreshing = fetcher.refreshing().orElseThrow();
+        }
+
+        // assert
+        assertEquals(expected, actual);
+        assertFalse(refreshing.isDone());
+
+        refreshing.join();
+        verify(1, getRequestedFor(urlEqualTo("/http/stale"))
+            .withHeader("If-Modified-Since", equalTo("Fri, 09 Apr 2021 11:11:00 GMT")));
+    }
+
+    @Test
+    void should_fetch_offline_from_cache(@TempDir Path cache) throws IOException {
+
+        // setup
+        var zipFile = Paths.get("src/test/resources/java11-quarkus-maven.zip");
+
+        stubFor(head(UrlPattern.ANY).willReturn(ok()));
+
+        stubFor(get("/http/offline")
+            .willReturn(ok()
+                .withBody(Files.readAllBytes(zipFile))));
+
+        var uri = URI.create("http://localhost:10008/http/offline");
+        var staging = cache.resolve("staging");
+
+        Path expected;
+        try(var fetcher = TemplationFetcher.create(uri, staging, TemplationCache.create(cache))){
+            expected = fetcher.fetch();
+        }
+        resetAllRequests();
+
+        // act
+        Path actual;
+        try(var fetcher = TemplationFetcher.create(uri, staging, TemplationCache.create(cache), true)){
+            actual = fetcher.fetch();
+        }
+
+        // assert
+        assertEquals(expected, actual);
+        verify(0, anyRequestedFor(UrlPattern.ANY));
+    }
+
+    @Test
+    void should_fail_offline_when_not_cached(@TempDir Path cache) {
+
+        // setup
+        var uri = URI.create("http://localhost:10008/http/not-cached");
+        var staging = cache.resolve("staging");
+
+        // act
+        var actual = assertThrows(TemplationNotFoundException.class, () ->
+            TemplationFetcher.create(uri, staging, TemplationCache.create(cache), true));
+
+        // assert
+        assertTrue(actual.getMessage().contains("offline"));
+        verify(0, anyRequestedFor(UrlPattern.ANY));
+    }
+
+    @Test
+    void should_not_probe_cached_templation(@TempDir Path cache) throws IOException {
+
+        // setup
+        var zipFile = Paths.get("src/test/resources/java11-quarkus-maven.zip");
+
+        stubFor(get("/http/probe")
+            .willReturn(ok()
+                .withBody(Files.readAllBytes(zipFile))));
+
+        var uri = URI.create("http://localhost:10008/http/probe");
+
+        // act
+        try(var fetcher = TemplationFetcher.create(uri, cache.resolve("staging"),
+                TemplationCache.create(cache))){
+            fetcher.fetch();
+        }
+
+        // assert
+        verify(0, headRequestedFor(UrlPattern.ANY));
+        verify(1, getRequestedFor(urlEqualTo("/http/probe")));
+    }
+
+    @Test
+    void should_not_find_missing_cached_templation(@TempDir Path cache) throws IOException {
+
+        // setup
+        stubFor(get("/http/missing").willReturn(notFound()));
+
+        var uri = URI.create("http://localhost:10008/http/missing");
+
+        try(var fetcher = TemplationFetcher.create(uri, cache.resolve("staging"),
+                TemplationCache.create(cache))){
+
+            // act
+            var actual = assertThrows(TemplationNotFoundException.class, fetcher::fetch);
+
+            // assert
+            assertEquals(uri.toString(), actual.getMessage());
+        }
+    }
+
+    @Test
+    void should_keep_apart_references_of_similar_locations(@TempDir Path cache)
+        throws IOException {
+
+        // setup
+        var store = TemplationCache.create(cache);
+
+        var bar = new Properties();
+        bar.setProperty(TemplationCache.KEY, "commit-bar");
+        var baz = new Properties();
+        baz.setProperty(TemplationCache.KEY, "commit-baz");
+
+        // act
+        store.reference("https://github.com/foo/bar-baz", bar);
+        store.reference("https://github.com/foo-bar/baz", baz);
+
+        // assert
+        assertEquals("commit-bar", store.reference("https://github.com/foo/bar-baz")
+            .orElseThrow().getProperty(TemplationCache.KEY));
+        assertEquals("commit-baz", store.reference("https://github.com/foo-bar/baz")
+            .orElseThrow().getProperty(TemplationCache.KEY));
+    }
+
+    @Test
+    void should_evict_unreferenced_trees_unused_for_a_while(@TempDir Path cache)
+        throws IOException {
+
+        // setup
+        var store = TemplationCache.create(cache);
+        var zipFile = Paths.get("src/test/resources/java11-quarkus-maven.zip");
+
+        var old = store.store("sha256-old", zipFile);
+        var recent = store.store("sha256-recent", zipFile);
+        var last = store.store("sha256-last", zipFile);
+
+        var location = "http://localhost:10008/http/evict";
+        var reference = new Properties();
+        reference.setProperty(TemplationCache.KEY, "sha256-old");
+        store.reference(location, reference);
+
+        Files.setLastModifiedTime(old, FileTime.from(Instant.now().minus(Duration.ofDays(2))));
+
+        // act
+        reference.setProperty(TemplationCache.KEY, "sha256-last");
+        store.reference(location, reference);
+
+        // assert
+        assertFalse(Files.exists(old));
+        assertTrue(Files.isDirectory(recent));
+        assertTrue(Files.isDirectory(last));
     }
 
     @Test
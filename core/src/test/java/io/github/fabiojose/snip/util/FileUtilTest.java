@@ -0,0 +1,109 @@
+package io.github.fabiojose.snip.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermissions;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class FileUtilTest {
+
+    @TempDir
+    Path location;
+
+    private Path staged() throws IOException {
+
+        var result = FileUtil.sibling(location.resolve("my-app"));
+        Files.createDirectories(result.resolve("src"));
+        Files.writeString(result.resolve("src/App.java"), "class App {}");
+
+        return result;
+    }
+
+    @Test
+    public void should_publish_by_rename_when_absent() throws IOException {
+
+        // setup
+        var staged = staged();
+        var target = location.resolve("my-app");
+
+        // act
+        var actual = FileUtil.publish(staged, target);
+
+        // assert
+        assertTrue(actual);
+        assertFalse(Files.exists(staged));
+        assertEquals("class App {}", Files.readString(target.resolve("src/App.java")));
+    }
+
+    @Test
+    public void should_merge_when_existing() throws IOException {
+
+        // setup
+        var staged = staged();
+        var target = location.resolve("my-app");
+        Files.createDirectories(target.resolve("src"));
+        Files.writeString(target.resolve("src/App.java"), "class Old {}");
+        Files.writeString(target.resolve("keep.txt"), "keep");
+
+        // act
+        var actual = FileUtil.publish(staged, target);
+
+        // assert
+        assertFalse(actual);
+        assertFalse(Files.exists(staged));
+        assertEquals("class App {}", Files.readString(target.resolve("src/App.java")));
+        assertEquals("keep", Files.readString(target.resolve("keep.txt")));
+    }
+
+    @Test
+    public void should_discard_to_trash_and_delete_in_background() throws IOException {
+
+        // setup
+        var staged = staged();
+        var trash = location.resolve("trash");
+
+        // act
+        var deleted = FileUtil.discard(staged, trash);
+
+        // assert
+        assertFalse(Files.exists(staged));
+        deleted.join();
+        assertFalse(Files.exists(trash));
+    }
+
+    @Test
+    public void should_transfer_keeping_permissions_and_times() throws IOException {
+
+        // setup
+        var source = location.resolve("mvnw");
+        Files.writeString(source, "#!/bin/sh");
+        assumeTrue(null!= Files.getFileAttributeView(source, PosixFileAttributeView.class));
+
+        var permissions = PosixFilePermissions.fromString("rwxrwxr-x");
+        Files.setPosixFilePermissions(source, permissions);
+        var modified = FileTime.fromMillis(1_600_000_000_000L);
+        Files.setLastModifiedTime(source, modified);
+
+        var target = location.resolve("copy/mvnw");
+        Files.createDirectories(target.getParent());
+        Files.writeString(target, "to be replaced");
+
+        // act
+        FileUtil.transfer(source, target);
+
+        // assert
+        assertEquals("#!/bin/sh", Files.readString(target));
+        assertEquals(permissions, Files.getPosixFilePermissions(target));
+        assertEquals(modified, Files.getLastModifiedTime(target));
+    }
+}